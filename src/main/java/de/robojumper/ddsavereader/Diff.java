@@ -0,0 +1,75 @@
+package de.robojumper.ddsavereader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.List;
+import java.util.stream.Stream;
+
+import de.robojumper.ddsavereader.BuildConfig;
+import de.robojumper.ddsavereader.file.DsonDiff;
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonTypes;
+
+// Structural diff of two save files. Like diff(1), exits with 0 if the files
+// are the same, 1 if they differ and 2 on errors.
+public class Diff {
+
+    public static void main(String[] args) {
+        String arg;
+        int i = 0;
+        String namefile = "";
+
+        while (i < args.length && args[i].startsWith("-")) {
+            arg = args[i++];
+
+            if (arg.equals("-n") || arg.equals("--names")) {
+                if (i < args.length) {
+                    namefile = args[i++];
+                } else {
+                    System.err.println("--names requires a filename");
+                }
+            }
+        }
+
+        if (i != args.length - 2) {
+            System.err.println("Usage: java -jar " + BuildConfig.JAR_NAME
+                    + " diff [--names, -n <namefile>] oldfile newfile");
+            System.exit(2);
+        }
+
+        if (!namefile.equals("")) {
+            try (Stream<String> lines = Files.lines(Paths.get(namefile))) {
+                lines.filter(l -> !l.equals("")).forEach(DsonTypes::offerName);
+            } catch (IOException e) {
+                System.err.println("Could not read " + namefile);
+                System.err.println(e.getMessage());
+                System.exit(2);
+            }
+        }
+        UnhashBehavior behavior = namefile.equals("") ? UnhashBehavior.NONE : UnhashBehavior.UNHASH;
+
+        DsonFile oldFile = read(args[i], behavior);
+        DsonFile newFile = read(args[i + 1], behavior);
+        List<DsonDiff.Change> changes = DsonDiff.diff(oldFile, newFile);
+        for (DsonDiff.Change c : changes) {
+            System.out.println(c);
+        }
+        System.exit(changes.isEmpty() ? 0 : 1);
+    }
+
+    private static DsonFile read(String file, UnhashBehavior behavior) {
+        try {
+            return new DsonFile(Files.readAllBytes(Paths.get(file)), behavior);
+        } catch (IOException e) {
+            System.err.println("Could not read " + file);
+            System.err.println(e.getMessage());
+        } catch (ParseException e) {
+            System.err.println("Could not decode " + file + ":" + e.getErrorOffset() + " - " + e.getMessage());
+        }
+        System.exit(2);
+        return null;
+    }
+}
@@ -4,10 +4,17 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
 import de.robojumper.ddsavereader.BuildConfig;
 import de.robojumper.ddsavereader.file.DsonFile;
 import de.robojumper.ddsavereader.file.DsonTypes;
@@ -19,7 +26,7 @@ public class Dson2Json {
 		String arg;
 		int i = 0;
 		boolean debug = false;
-		String outfile = "", infile = "", namefile = "";
+		String outfile = "", infile = "", namefile = "", format = "json";
 
 		while (i < args.length && args[i].startsWith("-")) {
 			arg = args[i++];
@@ -43,12 +50,44 @@ public class Dson2Json {
 					System.err.println("--names requires a filename");
 				}
 			}
+
+			if (arg.equals("-f") || arg.equals("--format")) {
+				if (i < args.length) {
+					format = args[i++].toLowerCase();
+				} else {
+					System.err.println("--format requires a format");
+				}
+			}
 		}
 		
 		if (i == args.length - 1) {
 			infile = args[i++];
 		} else {
-			System.err.println("Usage: java -jar " + BuildConfig.JAR_NAME + ".jar decode [--debug, -d] [--names, -n <namefile>] [--output, -o <outfile>] filename");
+			System.err.println("Usage: java -jar " + BuildConfig.JAR_NAME + ".jar decode [--debug, -d] [--names, -n <namefile>] [--format, -f <json|json-compact|smile|cbor>] [--output, -o <outfile>] filename");
+			System.exit(1);
+		}
+
+		// The pretty-printed text is built by DsonFile itself, all other formats
+		// are streamed from the field tree through a Jackson generator
+		JsonFactory factory = null;
+		switch (format) {
+		case "json":
+			break;
+		case "json-compact":
+			factory = new JsonFactory();
+			break;
+		case "smile":
+			factory = new SmileFactory();
+			break;
+		case "cbor":
+			factory = new CBORFactory();
+			break;
+		default:
+			System.err.println("Unknown format " + format + ", expected json, json-compact, smile or cbor");
+			System.exit(1);
+		}
+		if (factory != null && debug) {
+			System.err.println("--debug is only supported for --format json");
 			System.exit(1);
 		}
 		
@@ -69,18 +108,30 @@ public class Dson2Json {
 			}
 		}
 
+		DsonFile File = null;
 		String OutResult = null;
 		try {
 			byte[] FileData = Files.readAllBytes(Paths.get(infile));
-			DsonFile File = new DsonFile(FileData, UnhashBehavior.POUNDUNHASH);
-			OutResult = File.getJSonString(0, debug);
+			File = new DsonFile(FileData, UnhashBehavior.POUNDUNHASH);
+			if (factory == null) {
+				OutResult = File.getJSonString(0, debug);
+			}
 		} catch (Exception e) {
 			System.err.println("Could not read " + infile);
 			System.err.println(e.getMessage());
 			System.exit(1);
 		}
-		
-		if (!outfile.equals("")) {
+
+		if (factory != null) {
+			try (OutputStream out = outfile.equals("") ? System.out : Files.newOutputStream(Paths.get(outfile));
+					JsonGenerator gen = factory.createGenerator(out, JsonEncoding.UTF8)) {
+				File.writeJson(gen);
+			} catch (IOException e) {
+				System.err.println("Could not write " + (outfile.equals("") ? "output" : outfile));
+				System.err.println(e.getMessage());
+				System.exit(1);
+			}
+		} else if (!outfile.equals("")) {
 			try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outfile), StandardCharsets.UTF_8)) {
 				writer.write(OutResult, 0, OutResult.length());
 				writer.write("\n");
@@ -89,6 +140,8 @@ public class Dson2Json {
 				System.err.println(e.getMessage());
 				System.exit(1);
 			}
+		} else {
+			System.out.println(OutResult);
 		}
 	}
 }
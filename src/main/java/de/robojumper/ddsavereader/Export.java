@@ -0,0 +1,163 @@
+package de.robojumper.ddsavereader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import de.robojumper.ddsavereader.BuildConfig;
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonTypes;
+import de.robojumper.ddsavereader.util.Helpers;
+
+// Flattened export of any number of save files / save directories, one line
+// per leaf field. Files are decoded in parallel but written in order, so the
+// output is deterministic.
+public class Export {
+
+    // Shared factory, generators created from it are independent
+    private static final JsonFactory FACTORY = new JsonFactory().setRootValueSeparator(null);
+
+    public static void main(String[] args) {
+        String arg;
+        int i = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String namefile = "", outfile = "";
+
+        while (i < args.length && args[i].startsWith("-")) {
+            arg = args[i++];
+
+            if (arg.equals("-o") || arg.equals("--output")) {
+                if (i < args.length) {
+                    outfile = args[i++];
+                } else {
+                    System.err.println("--output requires a filename");
+                }
+            }
+
+            if (arg.equals("-t") || arg.equals("--threads")) {
+                if (i < args.length) {
+                    threads = Math.max(1, Integer.parseInt(args[i++]));
+                } else {
+                    System.err.println("--threads requires a number");
+                }
+            }
+
+            if (arg.equals("-n") || arg.equals("--names")) {
+                if (i < args.length) {
+                    namefile = args[i++];
+                } else {
+                    System.err.println("--names requires a filename");
+                }
+            }
+        }
+
+        if (i == args.length) {
+            System.err.println("Usage: java -jar " + BuildConfig.JAR_NAME
+                    + " export [--names, -n <namefile>] [--threads, -t <n>] [--output, -o <outfile>] fileOrDir [fileOrDir ...]");
+            System.exit(1);
+        }
+
+        if (!namefile.equals("")) {
+            try (Stream<String> lines = Files.lines(Paths.get(namefile))) {
+                lines.filter(l -> !l.equals("")).forEach(DsonTypes::offerName);
+            } catch (IOException e) {
+                System.err.println("Could not read " + namefile);
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+        // The raw value of unhashed integers goes into the hash column, so
+        // there's no need to mark them
+        UnhashBehavior behavior = namefile.equals("") ? UnhashBehavior.NONE : UnhashBehavior.UNHASH;
+
+        List<String> roots = Arrays.asList(args).subList(i, args.length);
+        List<Path> files = null;
+        try {
+            files = Helpers.collectSaveFiles(roots);
+        } catch (IOException e) {
+            System.err.println("Could not scan " + e.getMessage());
+            System.exit(1);
+        }
+
+        int failed = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (OutputStream out = new BufferedOutputStream(
+                outfile.equals("") ? System.out : Files.newOutputStream(Paths.get(outfile)), 1 << 16)) {
+            // Bounded window of files in flight: keeps all threads busy
+            // without holding the whole archive in memory
+            int window = threads * 4;
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            int next = 0;
+            while (next < files.size() || !pending.isEmpty()) {
+                while (next < files.size() && pending.size() < window) {
+                    Path file = files.get(next++);
+                    String name = relativeName(file, roots);
+                    pending.add(pool.submit(() -> exportFile(file, name, behavior)));
+                }
+                try {
+                    out.write(pending.remove().get());
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.err.println(e.getCause().getMessage());
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.exit(failed > 0 ? 1 : 0);
+    }
+
+    // The lines of one file, paths start with name
+    static byte[] export(byte[] data, String name, UnhashBehavior behavior) throws IOException, ParseException {
+        DsonFile f = new DsonFile(data, behavior);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonGenerator gen = FACTORY.createGenerator(buffer)) {
+            f.writeLeaves(gen, name + ":");
+        }
+        return buffer.toByteArray();
+    }
+
+    // Files found in a directory are named relative to it, so that exports of
+    // the same archive from different places have the same paths
+    private static String relativeName(Path file, List<String> roots) {
+        for (String root : roots) {
+            Path rootPath = Paths.get(root);
+            if (Files.isDirectory(rootPath) && file.startsWith(rootPath)) {
+                return rootPath.relativize(file).toString().replace('\\', '/');
+            }
+        }
+        return file.getFileName().toString();
+    }
+
+    private static byte[] exportFile(Path file, String name, UnhashBehavior behavior) throws IOException {
+        try {
+            return export(Files.readAllBytes(file), name, behavior);
+        } catch (ParseException e) {
+            throw new IOException("Could not export " + file + ":" + e.getErrorOffset() + " - " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Could not export " + file + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -2,21 +2,19 @@ package de.robojumper.ddsavereader;
 
 import de.robojumper.ddsavereader.BuildConfig;
 import de.robojumper.ddsavereader.spreadsheets.SpreadsheetsService;
-import de.robojumper.ddsavereader.ui.javafx.DDSaveEditorApp;
+import de.robojumper.ddsavereader.spreadsheets.TableFileSink;
 import de.robojumper.ddsavereader.util.ReadNames;
 
 public class Main {
     public static void main(String... args) {
-        // 初始化语言设置
-        de.robojumper.ddsavereader.ui.javafx.dialogs.LanguageSelectionDialog.initializeLanguage();
-        
         if (args.length == 0) {
             // 使用JavaFX界面
-            DDSaveEditorApp.main(args);
+            launchGui(args);
         } else {
+            // 命令行模式：不初始化语言设置，也不加载任何JavaFX类
             String[] restArgs = new String[args.length - 1];
             System.arraycopy(args, 1, restArgs, 0, args.length - 1);
-            
+
             switch (args[0].toLowerCase()) {
             case "decode":
             case "dson2json":
@@ -31,13 +29,32 @@ public class Main {
                 System.out.println(BuildConfig.DISPLAY_NAME + "/" + BuildConfig.VERSION + ", " + BuildConfig.GITHUB_URL);
                 SpreadsheetsService.main(restArgs);
                 break;
+            case "tables":
+                TableFileSink.main(restArgs);
+                break;
+            case "verify":
+                Verify.main(restArgs);
+                break;
+            case "export":
+                Export.main(restArgs);
+                break;
+            case "diff":
+                Diff.main(restArgs);
+                break;
             case "names":
                 ReadNames.main(restArgs);
                 break;
             default:
                 System.err.println("Error: Unknown command " + args[0]);
-                System.err.println("Commands: decode, encode, sheets, names");
+                System.err.println("Commands: decode, encode, verify, export, diff, sheets, tables, names");
             }
         }
     }
+
+    // UI类只在这里被引用，命令行路径不会触发它们的加载
+    private static void launchGui(String[] args) {
+        // 初始化语言设置
+        de.robojumper.ddsavereader.ui.javafx.dialogs.LanguageSelectionDialog.initializeLanguage();
+        de.robojumper.ddsavereader.ui.javafx.DDSaveEditorApp.main(args);
+    }
 }
@@ -0,0 +1,119 @@
+package de.robojumper.ddsavereader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import de.robojumper.ddsavereader.BuildConfig;
+import de.robojumper.ddsavereader.file.DsonTypes;
+import de.robojumper.ddsavereader.file.DsonVerifier;
+import de.robojumper.ddsavereader.util.Helpers;
+
+// Round-trip verification of any number of save files / save directories.
+// Files are checked in parallel, results are printed as soon as they are done.
+public class Verify {
+
+    public static void main(String[] args) {
+        String arg;
+        int i = 0;
+        boolean verbose = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String namefile = "";
+
+        while (i < args.length && args[i].startsWith("-")) {
+            arg = args[i++];
+
+            if (arg.equals("-v") || arg.equals("--verbose")) {
+                verbose = true;
+            }
+
+            if (arg.equals("-t") || arg.equals("--threads")) {
+                if (i < args.length) {
+                    threads = Math.max(1, Integer.parseInt(args[i++]));
+                } else {
+                    System.err.println("--threads requires a number");
+                }
+            }
+
+            if (arg.equals("-n") || arg.equals("--names")) {
+                if (i < args.length) {
+                    namefile = args[i++];
+                } else {
+                    System.err.println("--names requires a filename");
+                }
+            }
+        }
+
+        if (i == args.length) {
+            System.err.println("Usage: java -jar " + BuildConfig.JAR_NAME
+                    + " verify [--verbose, -v] [--threads, -t <n>] [--names, -n <namefile>] fileOrDir [fileOrDir ...]");
+            System.exit(1);
+        }
+
+        if (!namefile.equals("")) {
+            try (Stream<String> lines = Files.lines(Paths.get(namefile))) {
+                lines.filter(l -> !l.equals("")).forEach(DsonTypes::offerName);
+            } catch (IOException e) {
+                System.err.println("Could not read " + namefile);
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        List<Path> files = null;
+        try {
+            files = Helpers.collectSaveFiles(Arrays.asList(args).subList(i, args.length));
+        } catch (IOException e) {
+            System.err.println("Could not scan " + e.getMessage());
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        int failed = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<String> results = new ExecutorCompletionService<>(pool);
+            for (Path file : files) {
+                results.submit(() -> verifyFile(file));
+            }
+            for (int n = 0; n < files.size(); n++) {
+                String line = results.take().get();
+                boolean ok = line.startsWith("OK");
+                if (!ok) {
+                    failed++;
+                }
+                if (!ok || verbose) {
+                    System.out.println(line);
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println(String.format("%d files, %d failed, %.1fs", files.size(), failed,
+                (System.nanoTime() - start) / 1e9));
+        System.exit(failed > 0 ? 1 : 0);
+    }
+
+    // Returns "OK <file>" if the file round-trips, otherwise "FAIL <file>: <reason>"
+    private static String verifyFile(Path file) throws InterruptedException {
+        try {
+            DsonVerifier.Result r = DsonVerifier.verify(Files.readAllBytes(file));
+            return r.isOk() ? "OK " + file : "FAIL " + file + ": " + r;
+        } catch (IOException e) {
+            return "FAIL " + file + ": Could not read: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package de.robojumper.ddsavereader.file;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.robojumper.ddsavereader.file.DsonTypes.FieldType;
+
+/**
+ * Structural diff between two decoded files. Fields are matched by name (and
+ * by occurrence for duplicate names), paths are field names separated by '/'
+ * with embedded files being part of the path.
+ *
+ * Before descending into a field, the subtree hashes computed while reading
+ * ({@link DsonFile#getFieldHash}) are compared. They cover the bytes, the
+ * alignment and the hierarchy of the whole subtree, so an unchanged subtree is
+ * skipped in constant time and the cost is dominated by the changed parts.
+ * Leaves are compared by their decoded value, as the game writes garbage bits
+ * to some fields.
+ */
+public class DsonDiff {
+
+    public enum Kind {
+        ADDED, REMOVED, CHANGED
+    }
+
+    public static class Change {
+        public final Kind kind;
+        public final String path;
+        // Decoded value as in the JSON text, null for objects and files and
+        // for the missing side of added / removed fields
+        public final String oldValue;
+        public final String newValue;
+
+        Change(Kind kind, String path, String oldValue, String newValue) {
+            this.kind = kind;
+            this.path = path;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+            case ADDED:
+                return "+ " + path + (newValue != null ? ": " + newValue : "");
+            case REMOVED:
+                return "- " + path + (oldValue != null ? ": " + oldValue : "");
+            default:
+                return "~ " + path + ": " + oldValue + " -> " + newValue;
+            }
+        }
+    }
+
+    public static List<Change> diff(DsonFile oldFile, DsonFile newFile) {
+        List<Change> changes = new ArrayList<>();
+        diffFields(oldFile.rootFields, newFile.rootFields, "", changes);
+        return changes;
+    }
+
+    private static void diffFields(List<DsonField> oldFields, List<DsonField> newFields, String prefix,
+            List<Change> changes) {
+        // Pair up the n-th occurrence of a name on both sides
+        Map<String, Deque<DsonField>> unmatched = new HashMap<>();
+        for (DsonField f : newFields) {
+            unmatched.computeIfAbsent(f.name, k -> new ArrayDeque<>()).add(f);
+        }
+        for (DsonField o : oldFields) {
+            Deque<DsonField> candidates = unmatched.get(o.name);
+            DsonField n = candidates != null ? candidates.poll() : null;
+            if (n == null) {
+                changes.add(new Change(Kind.REMOVED, prefix + o.name, valueOf(o), null));
+            } else {
+                diffField(o, n, prefix + o.name, changes);
+            }
+        }
+        for (DsonField n : newFields) {
+            Deque<DsonField> candidates = unmatched.get(n.name);
+            if (candidates.peek() == n) {
+                candidates.poll();
+                changes.add(new Change(Kind.ADDED, prefix + n.name, null, valueOf(n)));
+            }
+        }
+    }
+
+    private static void diffField(DsonField o, DsonField n, String path, List<Change> changes) {
+        if (o.subtreeHash == n.subtreeHash) {
+            return;
+        }
+        if (o.type != n.type) {
+            changes.add(new Change(Kind.CHANGED, path, valueOf(o), valueOf(n)));
+        } else if (o.type == FieldType.TYPE_OBJECT) {
+            diffFields(Arrays.asList(o.children), Arrays.asList(n.children), path + "/", changes);
+        } else if (o.type == FieldType.TYPE_FILE) {
+            diffFields(o.embeddedFile.rootFields, n.embeddedFile.rootFields, path + "/", changes);
+        } else if (!o.dataString.equals(n.dataString)) {
+            changes.add(new Change(Kind.CHANGED, path, o.dataString, n.dataString));
+        }
+    }
+
+    private static String valueOf(DsonField f) {
+        return f.type == FieldType.TYPE_OBJECT || f.type == FieldType.TYPE_FILE ? null : f.dataString;
+    }
+}
@@ -1,5 +1,6 @@
 package de.robojumper.ddsavereader.file;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
@@ -7,6 +8,8 @@ import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Iterator;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
 import de.robojumper.ddsavereader.file.DsonTypes.FieldType;
 
@@ -33,6 +36,14 @@ public class DsonField {
     // the offset of this field from the beginning of the DATA block
     // (required since some types are aligned)
     public int dataStartInFile;
+    // the offset of this field's name from the beginning of the DATA block
+    public int nameStartInFile;
+    // the offset from the beginning of the DATA block one past the last byte of
+    // this field and, for objects, all of its children
+    public int subtreeEndInFile;
+    // hash of this field's bytes, alignment and, for objects, number of
+    // children and their subtree hashes. Set when reading
+    public long subtreeHash;
 
     public int meta1EntryIdx = -1;
     public int meta2EntryIdx = -1;
@@ -241,6 +252,151 @@ public class DsonField {
 
     }
 
+    // Writes the value of a non-object field as a typed value, producing the same
+    // structure as dataString. Embedded files are written as objects
+    void writeValue(JsonGenerator gen, UnhashBehavior behavior) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(rawData).order(ByteOrder.LITTLE_ENDIAN);
+        // single-byte fields aren't aligned, the skip may point past their data
+        if (type != FieldType.TYPE_BOOL && type != FieldType.TYPE_CHAR) {
+            buf.position(alignmentSkip());
+        }
+        switch (type) {
+        case TYPE_BOOL:
+            gen.writeBoolean(rawData[0] != 0x00);
+            break;
+        case TYPE_CHAR:
+            gen.writeString(Character.toString((char) rawData[0]));
+            break;
+        case TYPE_TWOBOOL:
+            gen.writeStartArray();
+            gen.writeBoolean(rawData[alignmentSkip() + 0] != 0x00);
+            gen.writeBoolean(rawData[alignmentSkip() + 4] != 0x00);
+            gen.writeEndArray();
+            break;
+        case TYPE_INT:
+            writeMaybeHashedInt(gen, buf.getInt(), behavior);
+            break;
+        case TYPE_FLOAT:
+            gen.writeNumber(buf.getFloat());
+            break;
+        case TYPE_TWOINT:
+            gen.writeStartArray();
+            gen.writeNumber(buf.getInt());
+            gen.writeNumber(buf.getInt());
+            gen.writeEndArray();
+            break;
+        case TYPE_STRING:
+            gen.writeString(new String(rawData, alignmentSkip() + 4, buf.getInt() - 1, StandardCharsets.UTF_8));
+            break;
+        case TYPE_FILE:
+            embeddedFile.writeJson(gen, behavior);
+            break;
+        case TYPE_INTVECTOR: {
+            int arrLen = buf.getInt();
+            gen.writeStartArray();
+            for (int i = 0; i < arrLen; i++) {
+                writeMaybeHashedInt(gen, buf.getInt(), behavior);
+            }
+            gen.writeEndArray();
+            break;
+        }
+        case TYPE_STRINGVECTOR: {
+            int arrLen = buf.getInt();
+            // string positions are aligned relative to the start of the strings
+            int stringsStart = buf.position();
+            gen.writeStartArray();
+            for (int i = 0; i < arrLen; i++) {
+                int strlen = buf.getInt();
+                gen.writeString(new String(rawData, buf.position(), strlen - 1, StandardCharsets.UTF_8));
+                buf.position(buf.position() + strlen);
+                if (i < arrLen - 1) {
+                    int rel = buf.position() - stringsStart;
+                    buf.position(buf.position() + ((4 - (rel % 4)) % 4));
+                }
+            }
+            gen.writeEndArray();
+            break;
+        }
+        case TYPE_FLOATARRAY:
+            gen.writeStartArray();
+            while (buf.remaining() >= 4) {
+                gen.writeNumber(buf.getFloat());
+            }
+            gen.writeEndArray();
+            break;
+        default:
+            throw new IOException("Can't write field " + name + " of type " + type.name());
+        }
+    }
+
+    // Writes the raw integer(s) behind a value that writeValue unhashed, or
+    // null if nothing was unhashed
+    void writeHash(JsonGenerator gen, UnhashBehavior behavior) throws IOException {
+        if (behavior == UnhashBehavior.UNHASH || behavior == UnhashBehavior.POUNDUNHASH) {
+            ByteBuffer buf = ByteBuffer.wrap(rawData).order(ByteOrder.LITTLE_ENDIAN);
+            if (type == FieldType.TYPE_INT) {
+                int value = buf.getInt(alignmentSkip());
+                if (DsonTypes.NAME_TABLE.containsKey(value)) {
+                    gen.writeNumber(value);
+                    return;
+                }
+            } else if (type == FieldType.TYPE_INTVECTOR) {
+                buf.position(alignmentSkip());
+                int[] values = new int[buf.getInt()];
+                boolean anyHashed = false;
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = buf.getInt();
+                    anyHashed |= DsonTypes.NAME_TABLE.containsKey(values[i]);
+                }
+                if (anyHashed) {
+                    gen.writeArray(values, 0, values.length);
+                    return;
+                }
+            }
+        }
+        gen.writeNull();
+    }
+
+    private static void writeMaybeHashedInt(JsonGenerator gen, int value, UnhashBehavior behavior)
+            throws IOException {
+        String unHashed;
+        if ((behavior == UnhashBehavior.UNHASH || behavior == UnhashBehavior.POUNDUNHASH)
+                && (unHashed = DsonTypes.NAME_TABLE.get(value)) != null) {
+            gen.writeString(behavior == UnhashBehavior.POUNDUNHASH ? "###" + unHashed : unHashed);
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+
+    // offset from the beginning of the DATA block at which an embedded file
+    // starts (skips alignment and the string length)
+    int embeddedFileStart() {
+        return dataStartInFile + alignmentSkip() + 4;
+    }
+
+    // Returns the first child with the given name, or null. Also null for
+    // fields that aren't objects.
+    public DsonField getChild(String name) {
+        if (type == FieldType.TYPE_OBJECT) {
+            for (DsonField child : children) {
+                if (child.name.equals(name)) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Names of this field and its parents, separated by '/' since field names
+    // may contain dots
+    public String getPath() {
+        StringBuilder sb = new StringBuilder(name);
+        for (DsonField f = parent; f != null; f = f.parent) {
+            sb.insert(0, '/').insert(0, f.name);
+        }
+        return sb.toString();
+    }
+
     private int rawSize() {
         return rawData.length;
     }
@@ -254,6 +410,29 @@ public class DsonField {
         return (4 - (dataStartInFile % 4)) % 4;
     }
 
+    // Size of the value without alignment, which doesn't depend on where the
+    // field is in the file. Single-byte fields aren't aligned.
+    int valueSize() {
+        return rawData.length == 1 ? 1 : alignedSize();
+    }
+
+    // Offset of the value from the beginning of the DATA block
+    int valueStartInFile() {
+        return rawData.length == 1 ? dataStartInFile : dataStartInFile + alignmentSkip();
+    }
+
+    /**
+     * @return The value of an int field as stored, also if it was unhashed to
+     *         a name when decoding
+     * @throws IllegalStateException If this is not an int field
+     */
+    public int getIntValue() {
+        if (type != FieldType.TYPE_INT) {
+            throw new IllegalStateException(name + " is " + type.name() + ", not an int");
+        }
+        return ByteBuffer.wrap(rawData, alignmentSkip(), 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
     // ONLY for Object type!!
     public void setNumChildren(int num) {
         children = new DsonField[num];
@@ -1,5 +1,6 @@
 package de.robojumper.ddsavereader.file;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
@@ -11,8 +12,11 @@ import java.util.List;
 import java.util.Set;
 import java.util.Stack;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import de.robojumper.ddsavereader.file.DsonTypes.FieldType;
 import de.robojumper.ddsavereader.file.DsonFile.Meta2Block.Meta2BlockEntry;
+import de.robojumper.ddsavereader.util.Helpers;
 
 public class DsonFile {
 
@@ -109,6 +113,7 @@ public class DsonFile {
                 Meta2BlockEntry meta2Entry = meta2.entries[i];
                 DsonField field = new DsonField();
                 int off = meta2Entry.offset;
+                field.nameStartInFile = off;
                 field.name = readName(Data, off, meta2Entry.getNameStringLength() - 1);
                 if (DsonTypes.stringHash(field.name) != meta2Entry.nameHash) {
                     throw new ParseException(String.format("%d: Wrong name hash: Name %s, expected %d, is %d", off,
@@ -137,6 +142,10 @@ public class DsonFile {
                     dataLen = Data.length - off;
                 }
                 field.rawData = Arrays.copyOfRange(Data, off, off + dataLen);
+                field.subtreeEndInFile = off + dataLen;
+                field.subtreeHash = combineHash(
+                        Helpers.hash64(Data, field.nameStartInFile, field.subtreeEndInFile - field.nameStartInFile),
+                        field.nameStartInFile % 4);
                 if (meta2Entry.isObject()) {
                     // we are an object type
                     field.type = FieldType.TYPE_OBJECT;
@@ -188,7 +197,13 @@ public class DsonFile {
                 // In case an object was the last child of an object, we do this iteratively
                 while (!fieldStack.isEmpty() && fieldStack.peek().type == FieldType.TYPE_OBJECT
                         && fieldStack.peek().hasAllChilds()) {
-                    fieldStack.pop();
+                    DsonField obj = fieldStack.pop();
+                    // Children have been popped before, so their ranges and hashes are complete
+                    obj.subtreeHash = combineHash(obj.subtreeHash, obj.children.length);
+                    for (DsonField child : obj.children) {
+                        obj.subtreeEndInFile = Math.max(obj.subtreeEndInFile, child.subtreeEndInFile);
+                        obj.subtreeHash = combineHash(obj.subtreeHash, child.subtreeHash);
+                    }
                     parentIdxStack.pop();
                 }
             }
@@ -293,17 +308,31 @@ public class DsonFile {
             }
         }
 
+        // maxOffsetUpTo[i] is the largest offset of entries 0..i, used to find the
+        // first entry (in entry order) with a larger offset in logarithmic time
+        private int[] maxOffsetUpTo;
+
+        // Returns the offset of the first entry (in entry order) whose offset is
+        // larger than off, or -1 if there is none
         public int findSmallestOffsetLargerThan(int off) {
-            int bestIdx = -1;
-            int bestOffset = -1;
-            for (int i = 0; i < entries.length; i++) {
-                if (entries[i].offset > off && (bestIdx == -1 || entries[i].offset < bestOffset)) {
-                    bestIdx = i;
-                    bestOffset = entries[i].offset;
-                    break;
+            if (maxOffsetUpTo == null) {
+                maxOffsetUpTo = new int[entries.length];
+                int max = Integer.MIN_VALUE;
+                for (int i = 0; i < entries.length; i++) {
+                    max = Math.max(max, entries[i].offset);
+                    maxOffsetUpTo[i] = max;
+                }
+            }
+            int lo = 0, hi = entries.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxOffsetUpTo[mid] > off) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
                 }
             }
-            return bestOffset;
+            return lo < entries.length ? entries[lo].offset : -1;
         }
 
         static class Meta2BlockEntry {
@@ -358,6 +387,96 @@ public class DsonFile {
         return sb.toString();
     }
 
+    // Streams this file straight into a Jackson generator, which may be a binary
+    // one (Smile, CBOR). Produces the same structure as getJSonString without
+    // debug comments: hashed integers are unhashed according to the behavior
+    // this file was loaded with, embedded files are nested objects.
+    public void writeJson(JsonGenerator gen) throws IOException {
+        writeJson(gen, autoUnhashNames);
+    }
+
+    // Same as writeJson(JsonGenerator), with hashed integers unhashed
+    // according to the given behavior instead of the one this file was loaded
+    // with
+    public void writeJson(JsonGenerator gen, UnhashBehavior behavior) throws IOException {
+        gen.writeStartObject();
+        for (DsonField field : rootFields) {
+            writeField(gen, field, behavior);
+        }
+        gen.writeEndObject();
+    }
+
+    // Streams a single field of this file, wrapped in an object like
+    // getJSonString(DsonField), with hashed integers unhashed according to the
+    // given behavior
+    public void writeJson(JsonGenerator gen, DsonField field, UnhashBehavior behavior) throws IOException {
+        gen.writeStartObject();
+        writeField(gen, field, behavior);
+        gen.writeEndObject();
+    }
+
+    private void writeField(JsonGenerator gen, DsonField field, UnhashBehavior behavior) throws IOException {
+        gen.writeFieldName(field.name);
+        if (field.type == FieldType.TYPE_OBJECT) {
+            gen.writeStartObject();
+            Set<String> emittedFields = new HashSet<>();
+            for (DsonField child : field.children) {
+                // Same as writeObject: skip the duplicate fields DD sometimes writes
+                if (emittedFields.add(child.name)) {
+                    writeField(gen, child, behavior);
+                }
+            }
+            gen.writeEndObject();
+        } else {
+            field.writeValue(gen, behavior);
+        }
+    }
+
+    // Streams every leaf of this file as a flat record
+    // {"path": ..., "type": ..., "value": ..., "hash": ...}, one per line.
+    // Paths are prefix + field names separated by '/', embedded files are
+    // walked as if they were objects. hash holds the raw integer(s) of values
+    // that were unhashed, null otherwise. Records end with a newline, so the
+    // generator should be a text one without root value separator.
+    public void writeLeaves(JsonGenerator gen, String prefix) throws IOException {
+        for (DsonField field : uniqueFields(rootFields)) {
+            writeLeaves(gen, prefix, field);
+        }
+    }
+
+    private void writeLeaves(JsonGenerator gen, String prefix, DsonField field) throws IOException {
+        String path = prefix + field.name;
+        if (field.type == FieldType.TYPE_OBJECT) {
+            for (DsonField child : uniqueFields(Arrays.asList(field.children))) {
+                writeLeaves(gen, path + "/", child);
+            }
+        } else if (field.type == FieldType.TYPE_FILE) {
+            field.embeddedFile.writeLeaves(gen, path + "/");
+        } else {
+            gen.writeStartObject();
+            gen.writeStringField("path", path);
+            gen.writeStringField("type", field.type.name());
+            gen.writeFieldName("value");
+            field.writeValue(gen, autoUnhashNames);
+            gen.writeFieldName("hash");
+            field.writeHash(gen, autoUnhashNames);
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        }
+    }
+
+    // Same as writeObject: skip the duplicate fields DD sometimes writes
+    private static List<DsonField> uniqueFields(List<DsonField> fields) {
+        Set<String> emittedFields = new HashSet<>();
+        List<DsonField> unique = new ArrayList<>(fields.size());
+        for (DsonField field : fields) {
+            if (emittedFields.add(field.name)) {
+                unique.add(field);
+            }
+        }
+        return unique;
+    }
+
     @Override
     public String toString() {
         return getJSonString(0, false);
@@ -443,6 +562,87 @@ public class DsonFile {
         }
     }
 
+    // Returns the path of the innermost field whose name or data contains the
+    // given offset from the start of the file, descending into embedded files.
+    // Returns null if the offset doesn't point into the DATA block.
+    public String getFieldPathAt(int fileOffset) {
+        int off = fileOffset - header.dataOffset;
+        if (off < 0 || off >= header.dataLength) {
+            return null;
+        }
+        // Fields are laid out in DATA in the same order as their names, so the
+        // containing field is the one whose name starts last before the offset
+        DsonField best = null;
+        for (DsonField f : rootFields) {
+            best = findLastFieldStartingBefore(f, off, best);
+        }
+        if (best == null) {
+            return null;
+        }
+        if (best.type == FieldType.TYPE_FILE && off >= best.embeddedFileStart()) {
+            String innerPath = best.embeddedFile.getFieldPathAt(off - best.embeddedFileStart());
+            if (innerPath != null) {
+                return best.getPath() + "/" + innerPath;
+            }
+        }
+        return best.getPath();
+    }
+
+    private static DsonField findLastFieldStartingBefore(DsonField field, int off, DsonField best) {
+        if (field.nameStartInFile <= off && (best == null || field.nameStartInFile > best.nameStartInFile)) {
+            best = field;
+        }
+        if (field.type == FieldType.TYPE_OBJECT) {
+            for (DsonField child : field.children) {
+                best = findLastFieldStartingBefore(child, off, best);
+            }
+        }
+        return best;
+    }
+
+    public int getDataOffset() {
+        return header.dataOffset;
+    }
+
+    // Returns the field at a path of field names separated by '/', or null.
+    // As in the JSON text, the first of duplicate fields is used.
+    public DsonField getField(String path) {
+        String[] names = path.split("/");
+        DsonField field = null;
+        for (DsonField f : rootFields) {
+            if (f.name.equals(names[0])) {
+                field = f;
+                break;
+            }
+        }
+        for (int i = 1; i < names.length && field != null; i++) {
+            field = field.getChild(names[i]);
+        }
+        return field;
+    }
+
+    // JSON text of a single field of this file, wrapped in an object:
+    // { "name" : value }
+    public String getJSonString(DsonField field) {
+        StringBuilder sb = new StringBuilder("{\n");
+        writeField(sb, field, 1, false);
+        sb.append("\n}");
+        return sb.toString();
+    }
+
+    // Hash of a field and its whole subtree: the bytes of every field in it,
+    // their alignment and the hierarchy (META1 is not part of the bytes), so
+    // fields with the same hash decode the same. Computed while reading.
+    public long getFieldHash(DsonField field) {
+        return field.subtreeHash;
+    }
+
+    // Order dependent, so children in a different order hash differently
+    private static long combineHash(long h, long v) {
+        h = Long.rotateLeft(h ^ (v * 0x9E3779B97F4A7C15L), 31) * 0xC2B2AE3D27D4EB4FL;
+        return h ^ (h >>> 29);
+    }
+
     // adapted from https://stackoverflow.com/a/9855338
     // returns the hex representation of a Little-Endian byte array
     static String LEBytesToHexStr(byte[] bytes) {
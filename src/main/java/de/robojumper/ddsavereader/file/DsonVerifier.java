@@ -0,0 +1,178 @@
+package de.robojumper.ddsavereader.file;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonTypes.FieldType;
+
+/**
+ * Round-trip check for a single save file: decodes, encodes, decodes again.
+ * Uses the same criteria as the round-trip tests: The re-encoded file must
+ * have the same size as the original (save for files with duplicate fields)
+ * and must decode to the exact same text. We can't check for binary equality,
+ * as the game writes garbage bits to some fields.
+ *
+ * Failures carry the first differing offset into the original file and the
+ * path of the field at that offset.
+ */
+public class DsonVerifier {
+
+    public enum Status {
+        OK, DECODE_ERROR, ENCODE_ERROR, SIZE_MISMATCH, CONTENT_MISMATCH
+    }
+
+    public static class Result {
+        public final Status status;
+        // Offset into the original file, -1 if unknown
+        public final int offset;
+        // May be null
+        public final String fieldPath;
+        public final String message;
+
+        Result(Status status, int offset, String fieldPath, String message) {
+            this.status = status;
+            this.offset = offset;
+            this.fieldPath = fieldPath;
+            this.message = message;
+        }
+
+        public boolean isOk() {
+            return status == Status.OK;
+        }
+
+        @Override
+        public String toString() {
+            if (isOk()) {
+                return status.name();
+            }
+            StringBuilder sb = new StringBuilder(status.name());
+            if (offset >= 0) {
+                sb.append(" at 0x").append(Integer.toHexString(offset));
+            }
+            if (fieldPath != null) {
+                sb.append(" (").append(fieldPath).append(")");
+            }
+            if (message != null) {
+                sb.append(": ").append(message);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final Result OK = new Result(Status.OK, -1, null, null);
+
+    public static Result verify(byte[] data) throws InterruptedException {
+        DsonFile original;
+        String json;
+        try {
+            original = new DsonFile(data, UnhashBehavior.POUNDUNHASH);
+            json = original.getJSonString(0, false);
+        } catch (ParseException e) {
+            return new Result(Status.DECODE_ERROR, e.getErrorOffset(), null, e.getMessage());
+        } catch (RuntimeException e) {
+            return new Result(Status.DECODE_ERROR, -1, null, e.toString());
+        }
+
+        byte[] reEncoded;
+        try {
+            reEncoded = new DsonWriter(json).bytes();
+        } catch (IOException | ParseException e) {
+            return new Result(Status.ENCODE_ERROR, -1, null, e.getMessage());
+        }
+
+        DsonFile reDecoded;
+        try {
+            reDecoded = new DsonFile(reEncoded, UnhashBehavior.POUNDUNHASH);
+        } catch (ParseException e) {
+            return new Result(Status.ENCODE_ERROR, -1, null, "re-encoded file doesn't decode: " + e.getMessage());
+        }
+
+        // Files with duplicate fields will not have the same size anyway
+        if (!original.hasDuplicateFields() && reEncoded.length != data.length) {
+            // The first differing byte is usually in the header or the offsets
+            // of the meta blocks, look for the first field that changed size
+            Mismatch m = firstMismatch(original.rootFields, reDecoded.rootFields, original.header.dataOffset, "");
+            int off = m != null ? m.offset : Arrays.mismatch(data, reEncoded);
+            return new Result(Status.SIZE_MISMATCH, off, m != null ? m.path : original.getFieldPathAt(off),
+                    "encodes to " + reEncoded.length + " bytes instead of " + data.length);
+        }
+
+        if (!reDecoded.getJSonString(0, false).equals(json)) {
+            Mismatch m = firstMismatch(original.rootFields, reDecoded.rootFields, original.header.dataOffset, "");
+            if (m != null) {
+                return new Result(Status.CONTENT_MISMATCH, m.offset, m.path, "re-decodes differently");
+            }
+            return new Result(Status.CONTENT_MISMATCH, -1, null, "re-decodes differently");
+        }
+        return OK;
+    }
+
+    private static class Mismatch {
+        final int offset;
+        final String path;
+
+        Mismatch(int offset, String path) {
+            this.offset = offset;
+            this.path = path;
+        }
+    }
+
+    // Walks both field lists in lockstep and returns the first field that
+    // differs in name, type, size or value. dataBase is the file offset of the
+    // DATA block the fields in a live in.
+    private static Mismatch firstMismatch(List<DsonField> a, List<DsonField> b, int dataBase, String prefix) {
+        return firstMismatch(a.toArray(new DsonField[0]), b.toArray(new DsonField[0]), dataBase, prefix, false);
+    }
+
+    private static Mismatch firstMismatch(DsonField[] a, DsonField[] b, int dataBase, String prefix,
+            boolean skipDuplicates) {
+        Set<String> emitted = new HashSet<>();
+        int j = 0;
+        for (int i = 0; i < a.length; i++) {
+            DsonField fa = a[i];
+            // Duplicate fields are dropped when writing text, so the re-encoded
+            // file doesn't have them
+            if (skipDuplicates && !emitted.add(fa.name)) {
+                continue;
+            }
+            String path = prefix + fa.name;
+            int off = dataBase + fa.nameStartInFile;
+            if (j >= b.length) {
+                return new Mismatch(off, path);
+            }
+            DsonField fb = b[j++];
+            if (!fa.name.equals(fb.name) || fa.type != fb.type) {
+                return new Mismatch(off, path);
+            }
+            if (fa.type == FieldType.TYPE_OBJECT) {
+                Mismatch m = firstMismatch(fa.children, fb.children, dataBase, path + "/", true);
+                if (m != null) {
+                    return m;
+                }
+            } else if (fa.type == FieldType.TYPE_FILE) {
+                int embeddedBase = dataBase + fa.embeddedFileStart();
+                Mismatch m = firstMismatch(fa.embeddedFile.rootFields, fb.embeddedFile.rootFields,
+                        embeddedBase + fa.embeddedFile.header.dataOffset, path + "/");
+                if (m != null) {
+                    return m;
+                }
+            } else if (!fa.dataString.equals(fb.dataString)) {
+                return new Mismatch(dataBase + fa.dataStartInFile, path);
+            }
+            // Values that decode to the same text can still encode to a
+            // different size, e.g. strings that aren't valid UTF-8
+            if (fa.type != FieldType.TYPE_OBJECT && fa.valueSize() != fb.valueSize()) {
+                return new Mismatch(dataBase + fa.valueStartInFile(), path);
+            }
+        }
+        if (j < b.length) {
+            return new Mismatch(-1, prefix + b[j].name);
+        }
+        return null;
+    }
+}
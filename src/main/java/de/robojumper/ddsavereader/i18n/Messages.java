@@ -10,16 +10,27 @@ import java.util.ResourceBundle;
 public class Messages {
     
     private static final String BUNDLE_NAME = "de.robojumper.ddsavereader.i18n.messages";
-    private static ResourceBundle resourceBundle;
+    // 延迟加载：命令行模式下不需要加载资源文件
+    private static volatile ResourceBundle resourceBundle;
     
-    static {
-        // 默认使用系统语言，如果系统是中文则使用中文，否则使用英文
-        Locale locale = Locale.getDefault();
-        if (locale.getLanguage().equals("zh")) {
-            resourceBundle = ResourceBundle.getBundle(BUNDLE_NAME, Locale.SIMPLIFIED_CHINESE);
-        } else {
-            resourceBundle = ResourceBundle.getBundle(BUNDLE_NAME, Locale.ENGLISH);
+    private static ResourceBundle bundle() {
+        ResourceBundle b = resourceBundle;
+        if (b == null) {
+            synchronized (Messages.class) {
+                b = resourceBundle;
+                if (b == null) {
+                    // 默认使用系统语言，如果系统是中文则使用中文，否则使用英文
+                    Locale locale = Locale.getDefault();
+                    if (locale.getLanguage().equals("zh")) {
+                        b = ResourceBundle.getBundle(BUNDLE_NAME, Locale.SIMPLIFIED_CHINESE);
+                    } else {
+                        b = ResourceBundle.getBundle(BUNDLE_NAME, Locale.ENGLISH);
+                    }
+                    resourceBundle = b;
+                }
+            }
         }
+        return b;
     }
     
     /**
@@ -29,7 +40,7 @@ public class Messages {
      */
     public static String getString(String key) {
         try {
-            return resourceBundle.getString(key);
+            return bundle().getString(key);
         } catch (Exception e) {
             // 如果找不到键，返回键本身作为后备
             return key;
@@ -44,7 +55,7 @@ public class Messages {
      */
     public static String getString(String key, Object... args) {
         try {
-            String message = resourceBundle.getString(key);
+            String message = bundle().getString(key);
             return String.format(message, args);
         } catch (Exception e) {
             return key;
@@ -64,6 +75,6 @@ public class Messages {
      * @return 当前语言环境
      */
     public static Locale getCurrentLocale() {
-        return resourceBundle.getLocale();
+        return bundle().getLocale();
     }
 }
\ No newline at end of file
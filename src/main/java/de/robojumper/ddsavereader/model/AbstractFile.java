@@ -1,7 +1,97 @@
 package de.robojumper.ddsavereader.model;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+
+import de.robojumper.ddsavereader.file.DsonField;
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonTypes.FieldType;
+
 public abstract class AbstractFile {
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     public abstract void update(String json);
 
+    /**
+     * Updates from a decoded file instead of its JSON text. Files may reuse
+     * whatever hasn't changed since previous, which is an older version of this
+     * file that has been built already, or null. version is the save state
+     * version this update belongs to. By default, the JSON text is bound.
+     */
+    public void update(DsonFile file, AbstractFile previous, long version) {
+        update(toRawJson(file));
+    }
+
+    private interface JsonWriting {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    private static String toRawJson(JsonWriting writing) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(json)) {
+            writing.write(gen);
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return json.toString();
+    }
+
+    // JSON text of a decoded file with hashed ints as stored, whatever the
+    // file was decoded with. The adapters expect ints where they unhash.
+    protected static String toRawJson(DsonFile file) {
+        return toRawJson(gen -> file.writeJson(gen, UnhashBehavior.NONE));
+    }
+
+    // Same for one field of the file, wrapped in an object: { "name" : value }
+    protected static String toRawJson(DsonFile file, DsonField field) {
+        return toRawJson(gen -> file.writeJson(gen, field, UnhashBehavior.NONE));
+    }
+
+    // Binds the base_root object of a file with the adapter registered in the
+    // shared Gson, without building a tree of the whole file first. Returns
+    // null if the file has no base_root.
+    protected static <T> T readBaseRoot(String json, Class<T> cls) {
+        try (JsonReader in = new JsonReader(new StringReader(json))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("base_root")) {
+                    return SaveState.GSON.getAdapter(cls).read(in);
+                }
+                in.skipValue();
+            }
+            return null;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // Reading from a string, so IOExceptions are malformed JSON, too
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    // Children of an object field of a decoded file. Same as the JSON text,
+    // the first of duplicate fields wins.
+    protected static List<DsonField> uniqueChildren(DsonField field) {
+        if (field.type != FieldType.TYPE_OBJECT) {
+            throw new JsonParseException(field.name + " is not an object");
+        }
+        Set<String> names = new HashSet<>();
+        List<DsonField> unique = new ArrayList<>(field.children.length);
+        for (DsonField child : field.children) {
+            if (names.add(child.name)) {
+                unique.add(child);
+            }
+        }
+        return unique;
+    }
 }
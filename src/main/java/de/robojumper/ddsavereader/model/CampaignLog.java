@@ -1,24 +1,26 @@
 package de.robojumper.ddsavereader.model;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
-import com.google.gson.annotations.SerializedName;
 import com.google.gson.internal.LinkedTreeMap;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
+import de.robojumper.ddsavereader.file.DsonField;
+import de.robojumper.ddsavereader.file.DsonFile;
 import de.robojumper.ddsavereader.model.helper.HashedString;
 
 public class CampaignLog extends AbstractFile {
@@ -32,107 +34,270 @@ public class CampaignLog extends AbstractFile {
 
         @Override
         public Chapter read(JsonReader in) throws IOException {
-            JsonObject chapterRoot = JsonParser.parseReader(in).getAsJsonObject();
             Chapter c = new Chapter();
-            c.chapterIndex = chapterRoot.getAsJsonPrimitive("chapterIndex").getAsInt();
-            Gson g = SaveState.makeGson();
-            for (Entry<String, JsonElement> entry : chapterRoot.entrySet()) {
-                try {
-                    Integer.parseInt(entry.getKey());
-                    JsonObject RTTIObject = entry.getValue().getAsJsonObject();
-                    int rtti = RTTIObject.get("rtti").getAsInt();
-                    Class<? extends BaseRTTI> cls = RTTI_TO_CLASS_MAP.get(rtti);
-                    if (cls != null) {
-                        c.events.add(g.fromJson(RTTIObject, cls));
+            boolean hasIndex = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (name.equals("chapterIndex")) {
+                    c.chapterIndex = in.nextInt();
+                    hasIndex = true;
+                } else if (isIndex(name)) {
+                    BaseRTTI event = readEvent(in);
+                    if (event != null) {
+                        c.events.add(event);
                     }
-                } catch (NumberFormatException e) {
-                    // Do nothing
+                } else {
+                    in.skipValue();
                 }
             }
+            in.endObject();
+            if (!hasIndex) {
+                throw new JsonParseException("Chapter without chapterIndex");
+            }
             return c;
         }
 
+        static boolean isIndex(String name) {
+            try {
+                Integer.parseInt(name);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        // Returns null for events we don't know
+        static BaseRTTI readEvent(JsonReader in) throws IOException {
+            in.beginObject();
+            String name = in.nextName();
+            if (!name.equals("rtti")) {
+                // The game always writes rtti first. If something else
+                // doesn't, move it to the front and read that instead.
+                JsonObject o = new JsonObject();
+                o.add(name, JsonParser.parseReader(in));
+                while (in.hasNext()) {
+                    o.add(in.nextName(), JsonParser.parseReader(in));
+                }
+                in.endObject();
+                JsonObject reordered = new JsonObject();
+                reordered.add("rtti", o.remove("rtti"));
+                o.entrySet().forEach(e -> reordered.add(e.getKey(), e.getValue()));
+                return readEvent(new JsonReader(new StringReader(reordered.toString())));
+            }
+            int rtti = in.nextInt();
+            Supplier<BaseRTTI> factory = RTTI_TO_EVENT_MAP.get(rtti);
+            BaseRTTI event = factory != null ? factory.get() : null;
+            if (event != null) {
+                event.rtti = rtti;
+            }
+            while (in.hasNext()) {
+                name = in.nextName();
+                if (event == null || !event.readField(name, in)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return event;
+        }
+
     }
 
-    private static final Map<Integer, Class<? extends BaseRTTI>> RTTI_TO_CLASS_MAP = new HashMap<>();
+    static class CampaignLogDataAdapter extends TypeAdapter<CampaignLogData> {
+
+        @Override
+        public CampaignLogData read(JsonReader in) throws IOException {
+            CampaignLogData d = new CampaignLogData();
+            TypeAdapter<Chapter> chapters = SaveState.GSON.getAdapter(Chapter.class);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                case "total_weeks":
+                    d.weeks = in.nextInt();
+                    break;
+                case "chapters":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        Integer index = Integer.valueOf(in.nextName());
+                        d.chapters.put(index, chapters.read(in));
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return d;
+        }
+
+        @Override
+        public void write(JsonWriter out, CampaignLogData value) throws IOException {
+            throw new IOException("Saving the campaign log not supported");
+        }
+    }
+
+    private static final Map<Integer, Supplier<BaseRTTI>> RTTI_TO_EVENT_MAP = new HashMap<>();
 
     static {
-        RTTI_TO_CLASS_MAP.put(-579125384, HeroLevelupEvent.class);
-        RTTI_TO_CLASS_MAP.put(2006063882, MissionEvent.class);
-        RTTI_TO_CLASS_MAP.put(-37270005, BuildingUpgradeEvent.class);
-        RTTI_TO_CLASS_MAP.put(844919810, TownEvent.class);
+        RTTI_TO_EVENT_MAP.put(-579125384, HeroLevelupEvent::new);
+        RTTI_TO_EVENT_MAP.put(2006063882, MissionEvent::new);
+        RTTI_TO_EVENT_MAP.put(-37270005, BuildingUpgradeEvent::new);
+        RTTI_TO_EVENT_MAP.put(844919810, TownEvent::new);
     }
 
     public static class Chapter {
         public int chapterIndex;
         public List<BaseRTTI> events = new ArrayList<>(0);
+        // Only set for chapters read from a decoded file: the hash of the raw
+        // chapter, the events by field name and the newest event version
+        long rawHash;
+        Map<String, BaseRTTI> eventsByName = new HashMap<>();
+        long version;
     }
 
-    class CampaignLogData {
+    static class CampaignLogData {
 
-        @SerializedName("total_weeks")
         int weeks = -1;
 
-        @SerializedName("chapters")
         Map<Integer, Chapter> chapters = new LinkedTreeMap<>();
     }
 
-    public abstract class BaseRTTI {
-        @SerializedName("rtti")
+    public abstract static class BaseRTTI {
         int rtti;
+        // Hash of the raw event and the save state version it was read in,
+        // only set for events read from a decoded file
+        long rawHash;
+        long version;
+
+        /**
+         * @return The save state version in which this event was added or last
+         *         changed, 0 if the log was bound from JSON
+         */
+        public long getVersion() {
+            return version;
+        }
 
         public abstract List<String> getCells();
+
+        // Reads the value of the field with the given name, returns false
+        // if the event doesn't care about that field
+        abstract boolean readField(String name, JsonReader in) throws IOException;
     }
 
-    class HeroLevelupEvent extends BaseRTTI {
-        @SerializedName("name")
+    static class HeroLevelupEvent extends BaseRTTI {
         String name;
-        @SerializedName("class")
         HashedString heroClass;
-        @SerializedName("guid")
         int guid;
-        @SerializedName("level")
         int level;
 
+        @Override
+        boolean readField(String field, JsonReader in) throws IOException {
+            switch (field) {
+            case "name":
+                name = in.nextString();
+                return true;
+            case "class":
+                heroClass = HashedString.ADAPTER.read(in);
+                return true;
+            case "guid":
+                guid = in.nextInt();
+                return true;
+            case "level":
+                level = in.nextInt();
+                return true;
+            default:
+                return false;
+            }
+        }
+
         @Override
         public List<String> getCells() {
             return Arrays.asList("Hero Level Up", name + " (" + heroClass.toString() + ")  is now level " + level + ".");
         }
     }
 
-    public class HeroRef {
-        @SerializedName("name")
+    public static class HeroRef {
         String name;
-        @SerializedName("class")
         HashedString heroClass;
-        @SerializedName("died")
         boolean died;
-        @SerializedName("guid")
         int guid;
     }
 
-    class MissionEvent extends BaseRTTI {
-        @SerializedName("heroes")
-        Map<Integer, HeroRef> heroes;
+    static class MissionEvent extends BaseRTTI {
+        Map<Integer, HeroRef> heroes = new LinkedTreeMap<>();
 
-        @SerializedName("quest")
         HashedString quest;
 
-        @SerializedName("dungeon_type")
         HashedString dungeonType;
 
-        @SerializedName("difficulty")
         int difficulty;
 
-        @SerializedName("length")
         int length;
 
-        @SerializedName("start")
         boolean start;
 
-        @SerializedName("success")
         boolean success;
 
+        @Override
+        boolean readField(String field, JsonReader in) throws IOException {
+            switch (field) {
+            case "heroes":
+                in.beginObject();
+                while (in.hasNext()) {
+                    Integer index = Integer.valueOf(in.nextName());
+                    heroes.put(index, readHero(in));
+                }
+                in.endObject();
+                return true;
+            case "quest":
+                quest = HashedString.ADAPTER.read(in);
+                return true;
+            case "dungeon_type":
+                dungeonType = HashedString.ADAPTER.read(in);
+                return true;
+            case "difficulty":
+                difficulty = in.nextInt();
+                return true;
+            case "length":
+                length = in.nextInt();
+                return true;
+            case "start":
+                start = in.nextBoolean();
+                return true;
+            case "success":
+                success = in.nextBoolean();
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        private static HeroRef readHero(JsonReader in) throws IOException {
+            HeroRef h = new HeroRef();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                case "name":
+                    h.name = in.nextString();
+                    break;
+                case "class":
+                    h.heroClass = HashedString.ADAPTER.read(in);
+                    break;
+                case "died":
+                    h.died = in.nextBoolean();
+                    break;
+                case "guid":
+                    h.guid = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return h;
+        }
+
         @Override
         public List<String> getCells() {
             String missionTag = start ? "Mission Start" : (success ? "Mission Success" : "Mission Fail");
@@ -144,26 +309,60 @@ public class CampaignLog extends AbstractFile {
         }
     }
 
-    class TreeObject {
-        @SerializedName("tree")
+    static class TreeObject {
         HashedString tree;
-        @SerializedName("level")
         int level;
     }
 
-    class BuildingUpgradeEvent extends BaseRTTI {
-        @SerializedName("trees")
-        Map<Integer, TreeObject> trees;
+    static class BuildingUpgradeEvent extends BaseRTTI {
+        Map<Integer, TreeObject> trees = new LinkedTreeMap<>();
 
-        @SerializedName("id")
         HashedString id;
 
-        @SerializedName("percent")
         float percent;
 
-        @SerializedName("unlocked")
         boolean unlocked;
 
+        @Override
+        boolean readField(String field, JsonReader in) throws IOException {
+            switch (field) {
+            case "trees":
+                in.beginObject();
+                while (in.hasNext()) {
+                    Integer index = Integer.valueOf(in.nextName());
+                    TreeObject t = new TreeObject();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                        case "tree":
+                            t.tree = HashedString.ADAPTER.read(in);
+                            break;
+                        case "level":
+                            t.level = in.nextInt();
+                            break;
+                        default:
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    trees.put(index, t);
+                }
+                in.endObject();
+                return true;
+            case "id":
+                id = HashedString.ADAPTER.read(in);
+                return true;
+            case "percent":
+                percent = (float) in.nextDouble();
+                return true;
+            case "unlocked":
+                unlocked = in.nextBoolean();
+                return true;
+            default:
+                return false;
+            }
+        }
+
         @Override
         public List<String> getCells() {
             if (unlocked) {
@@ -174,10 +373,18 @@ public class CampaignLog extends AbstractFile {
         }
     }
 
-    class TownEvent extends BaseRTTI {
-        @SerializedName("town_event_result_id")
+    static class TownEvent extends BaseRTTI {
         HashedString id;
 
+        @Override
+        boolean readField(String field, JsonReader in) throws IOException {
+            if (field.equals("town_event_result_id")) {
+                id = HashedString.ADAPTER.read(in);
+                return true;
+            }
+            return false;
+        }
+
         @Override
         public List<String> getCells() {
             return Arrays.asList("Town Event", id.toString());
@@ -188,11 +395,77 @@ public class CampaignLog extends AbstractFile {
 
     @Override
     public void update(String json) {
-        JsonObject o = JsonParser.parseString(json).getAsJsonObject();
-        o = o.getAsJsonObject("base_root");
+        this.campaignLog = readBaseRoot(json, CampaignLogData.class);
+    }
 
-        Gson g = SaveState.makeGson();
-        this.campaignLog = g.fromJson(o, CampaignLogData.class);
+    /**
+     * The log only grows at the end of a week, so chapters and events are
+     * taken from the previous version as long as their raw bytes haven't
+     * changed. Only new and changed events are decoded.
+     */
+    @Override
+    public void update(DsonFile file, AbstractFile previous, long version) {
+        CampaignLogData prev = previous instanceof CampaignLog ? ((CampaignLog) previous).campaignLog : null;
+        CampaignLogData d = new CampaignLogData();
+        DsonField weeks = file.getField("base_root/total_weeks");
+        if (weeks != null) {
+            d.weeks = weeks.getIntValue();
+        }
+        DsonField chapters = file.getField("base_root/chapters");
+        if (chapters != null) {
+            for (DsonField c : uniqueChildren(chapters)) {
+                Integer index = Integer.valueOf(c.name);
+                d.chapters.put(index, readChapter(file, c, prev != null ? prev.chapters.get(index) : null, version));
+            }
+        }
+        this.campaignLog = d;
+    }
+
+    private static Chapter readChapter(DsonFile file, DsonField field, Chapter old, long version) {
+        long hash = file.getFieldHash(field);
+        if (old != null && old.rawHash == hash) {
+            return old;
+        }
+        Chapter c = new Chapter();
+        c.rawHash = hash;
+        boolean hasIndex = false;
+        for (DsonField e : uniqueChildren(field)) {
+            if (e.name.equals("chapterIndex")) {
+                c.chapterIndex = e.getIntValue();
+                hasIndex = true;
+            } else if (ChapterAdapter.isIndex(e.name)) {
+                BaseRTTI event = readEvent(file, e, old, version);
+                if (event != null) {
+                    c.events.add(event);
+                    c.eventsByName.put(e.name, event);
+                    c.version = Math.max(c.version, event.version);
+                }
+            }
+        }
+        if (!hasIndex) {
+            throw new JsonParseException("Chapter without chapterIndex");
+        }
+        return c;
+    }
+
+    private static BaseRTTI readEvent(DsonFile file, DsonField field, Chapter old, long version) {
+        long hash = file.getFieldHash(field);
+        BaseRTTI known = old != null ? old.eventsByName.get(field.name) : null;
+        if (known != null && known.rawHash == hash) {
+            return known;
+        }
+        try (JsonReader in = new JsonReader(new StringReader(toRawJson(file, field)))) {
+            in.beginObject();
+            in.nextName();
+            BaseRTTI event = ChapterAdapter.readEvent(in);
+            if (event != null) {
+                event.rawHash = hash;
+                event.version = version;
+            }
+            return event;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
     }
 
     public int getNumWeeks() {
@@ -212,6 +485,16 @@ public class CampaignLog extends AbstractFile {
                 .count();
     }
 
+    /**
+     * Events that were added or changed after the given save state version, in
+     * log order. Versions are only known for logs updated from decoded files
+     * (see SaveState.updateFiles).
+     */
+    public List<BaseRTTI> getEventsSince(long version) {
+        return getChapters().stream().filter(c -> c.version > version).flatMap(c -> c.events.stream())
+                .filter(e -> e.version > version).collect(Collectors.toList());
+    }
+
     public List<Chapter> getChapters() {
         return campaignLog.chapters.entrySet().stream().sorted((a, b) -> a.getKey() - b.getKey()).map(e -> e.getValue())
                 .collect(Collectors.toList());
@@ -1,59 +1,144 @@
 package de.robojumper.ddsavereader.model;
 
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.annotations.SerializedName;
+import com.google.gson.TypeAdapter;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
+import de.robojumper.ddsavereader.model.Estate.EstateData.InventoryObject;
 import de.robojumper.ddsavereader.model.Estate.EstateData.InventoryObject.ItemEntry;
 import de.robojumper.ddsavereader.model.Estate.EstateData.WalletEntry;
 
 public class Estate extends AbstractFile {
 
-    class EstateData {
-        class WalletEntry {
+    static class EstateDataAdapter extends TypeAdapter<EstateData> {
+
+        @Override
+        public EstateData read(JsonReader in) throws IOException {
+            EstateData d = new EstateData();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                case "wallet":
+                    readWallet(in, d.wallet);
+                    break;
+                case "trinkets":
+                    d.trinkets = readInventory(in);
+                    break;
+                case "endless_wave_highscore":
+                    d.endlessHighscore = in.nextInt();
+                    break;
+                case "estate_items":
+                    d.estateItems = readInventory(in);
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return d;
+        }
+
+        private static void readWallet(JsonReader in, Map<Integer, WalletEntry> wallet) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                Integer index = Integer.valueOf(in.nextName());
+                WalletEntry w = new WalletEntry();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                    case "amount":
+                        w.amount = in.nextInt();
+                        break;
+                    case "type":
+                        w.type = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                wallet.put(index, w);
+            }
+            in.endObject();
+        }
+
+        private static InventoryObject readInventory(JsonReader in) throws IOException {
+            InventoryObject inv = new InventoryObject();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("items")) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    Integer index = Integer.valueOf(in.nextName());
+                    ItemEntry item = new ItemEntry();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                        case "id":
+                            item.id = in.nextString();
+                            break;
+                        case "type":
+                            item.type = in.nextString();
+                            break;
+                        case "amount":
+                            item.amount = in.nextInt();
+                            break;
+                        default:
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    inv.items.put(index, item);
+                }
+                in.endObject();
+            }
+            in.endObject();
+            return inv;
+        }
+
+        @Override
+        public void write(JsonWriter out, EstateData value) throws IOException {
+            throw new IOException("Saving the estate not supported");
+        }
+    }
+
+    static class EstateData {
+        static class WalletEntry {
 
-            @SerializedName("amount")
             int amount;
 
-            @SerializedName("type")
             String type;
         }
 
-        @SerializedName("wallet")
-        Map<Integer, WalletEntry> wallet = new HashMap<>();
+        Map<Integer, WalletEntry> wallet = new LinkedTreeMap<>();
 
-        class InventoryObject {
-            class ItemEntry {
+        static class InventoryObject {
+            static class ItemEntry {
 
-                @SerializedName("id")
                 String id;
 
-                @SerializedName("type")
                 String type;
 
-                @SerializedName("amount")
                 int amount;
             }
 
-            @SerializedName("items")
-            Map<Integer, ItemEntry> items = new HashMap<>();
+            Map<Integer, ItemEntry> items = new LinkedTreeMap<>();
         }
 
-        @SerializedName("trinkets")
         InventoryObject trinkets = new InventoryObject();
 
-        @SerializedName("endless_wave_highscore")
         int endlessHighscore;
 
-        @SerializedName("estate_items")
         InventoryObject estateItems = new InventoryObject();
     }
 
@@ -61,11 +146,7 @@ public class Estate extends AbstractFile {
 
     @Override
     public void update(String json) {
-        JsonObject o = JsonParser.parseString(json).getAsJsonObject();
-        o = o.getAsJsonObject("base_root");
-
-        Gson g = SaveState.makeGson();
-        this.estateData = g.fromJson(o, EstateData.class);
+        this.estateData = readBaseRoot(json, EstateData.class);
     }
 
     public Integer getResourceCount(String resource) {
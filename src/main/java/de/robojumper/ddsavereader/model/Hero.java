@@ -1,35 +1,45 @@
 package de.robojumper.ddsavereader.model;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import com.google.gson.annotations.SerializedName;
+import com.google.gson.TypeAdapter;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import de.robojumper.ddsavereader.model.helper.HashedString;
 
 public class Hero {
 
     public enum HeroStatus {
-        @SerializedName("0")
         AVAILABLE(0, "Available"),
-        @SerializedName("1")
         SQUAD(1, "In Squad"),
-        @SerializedName("2")
         STAFFED(2, "Staffed"),
-        @SerializedName("3")
         DEAD(3, "Dead"),
-        @SerializedName("4")
         GONE(4, "Underway");
         
+        private final int value;
         private String status;
         
         HeroStatus(int v, String strStatus) {
+            this.value = v;
             this.status = strStatus;
         }
         
+        // null for values we don't know about
+        static HeroStatus fromValue(int v) {
+            for (HeroStatus s : values()) {
+                if (s.value == v) {
+                    return s;
+                }
+            }
+            return null;
+        }
+        
         public String toString() {
             return this.status;
         }
@@ -37,91 +47,240 @@ public class Hero {
     
     // TODO
     public enum DamageType {
-        @SerializedName("0")
         NONE(0, "Nothing"),
-        @SerializedName("4")
         PHYSICAL(4, "Physical"),
-        @SerializedName("7")
         BLIGHT(7, "Blight");
         
+        private final int value;
         private String status;
         
         DamageType(int v, String strStatus) {
+            this.value = v;
             this.status = strStatus;
         }
         
+        // null for values we don't know about
+        static DamageType fromValue(int v) {
+            for (DamageType t : values()) {
+                if (t.value == v) {
+                    return t;
+                }
+            }
+            return null;
+        }
+        
         public String toString() {
             return this.status;
         }
     };
 
-    @SerializedName("roster.status")
+    /**
+     * Streaming adapter for the base_root of a hero file. Rosters contain
+     * dozens of heroes with mostly irrelevant data, so everything we don't use
+     * is skipped without being bound.
+     */
+    public static class HeroAdapter extends TypeAdapter<Hero> {
+
+        @Override
+        public Hero read(JsonReader in) throws IOException {
+            Hero h = new Hero();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                case "roster.status":
+                    h.status = HeroStatus.fromValue(in.nextInt());
+                    break;
+                case "heroClass":
+                    h.heroClass = HashedString.ADAPTER.read(in);
+                    break;
+                case "resolveXp":
+                    h.resolveXP = in.nextInt();
+                    break;
+                case "m_Stress":
+                    h.stress = (float) in.nextDouble();
+                    break;
+                case "enemies_killed":
+                    h.kills = in.nextInt();
+                    break;
+                case "actor":
+                    h.data = readActor(in);
+                    break;
+                case "quirks":
+                    h.quirkMap = readQuirks(in);
+                    break;
+                case "skills":
+                    h.skills = readSkills(in);
+                    break;
+                case "trinkets":
+                    h.trinkets = readTrinkets(in);
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return h;
+        }
+
+        private static ActorData readActor(JsonReader in) throws IOException {
+            ActorData a = new ActorData();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                case "name":
+                    a.name = in.nextString();
+                    break;
+                case "current_hp":
+                    a.hp = in.nextString();
+                    break;
+                case "damage_source_data":
+                    a.lastDamageDealer = HashedString.ADAPTER.read(in);
+                    break;
+                case "damage_type":
+                    a.damageType = DamageType.fromValue(in.nextInt());
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return a;
+        }
+
+        private static Map<String, Quirk> readQuirks(JsonReader in) throws IOException {
+            Map<String, Quirk> quirks = new LinkedTreeMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                Quirk q = new Quirk();
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (in.nextName().equals("is_locked")) {
+                        q.isLocked = in.nextBoolean();
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                quirks.put(name, q);
+            }
+            in.endObject();
+            return quirks;
+        }
+
+        private static Skills readSkills(JsonReader in) throws IOException {
+            Skills s = new Skills();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                case "selected_combat_skills":
+                    readSkillMap(in, s.combatSkills);
+                    break;
+                case "selected_camping_skills":
+                    readSkillMap(in, s.campingSkills);
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return s;
+        }
+
+        private static void readSkillMap(JsonReader in, Map<String, Integer> map) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                map.put(in.nextName(), in.nextInt());
+            }
+            in.endObject();
+        }
+
+        private static Trinkets readTrinkets(JsonReader in) throws IOException {
+            Trinkets t = new Trinkets();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("items")) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    Integer slot = Integer.valueOf(in.nextName());
+                    Trinket trinket = new Trinket();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (in.nextName().equals("id")) {
+                            trinket.id = in.nextString();
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    t.items.put(slot, trinket);
+                }
+                in.endObject();
+            }
+            in.endObject();
+            return t;
+        }
+
+        @Override
+        public void write(JsonWriter out, Hero value) throws IOException {
+            throw new IOException("Saving heroes not supported");
+        }
+    }
+
     HeroStatus status;
     
-    @SerializedName("heroClass")
     HashedString heroClass;
     
-    @SerializedName("resolveXp")
     int resolveXP;
     
-    @SerializedName("m_Stress")
     float stress;
     
-    @SerializedName("enemies_killed")
     int kills;
     
-    class ActorData {
+    static class ActorData {
         
-        @SerializedName("name")
         String name;
         
-        @SerializedName("current_hp")
         String hp;
         
-        @SerializedName("damage_source_data")
         HashedString lastDamageDealer;
         
-        @SerializedName("damage_type")
         DamageType damageType;
     }
     
-    @SerializedName("actor")
     ActorData data;
     
-    class Quirk {
+    static class Quirk {
         
-        @SerializedName("is_locked")
         boolean isLocked;
     }
     
-    @SerializedName("quirks")
-    Map<String, Quirk> quirkMap;
+    Map<String, Quirk> quirkMap = new LinkedTreeMap<>();
     
-    class Skills {
-        @SerializedName("selected_combat_skills")
+    static class Skills {
         Map<String, Integer> combatSkills = new LinkedTreeMap<>();
-        @SerializedName("selected_camping_skills")
         Map<String, Integer> campingSkills = new LinkedTreeMap<>();
     }
     
-    @SerializedName("skills")
     Skills skills = new Skills();
     
-    public class Trinket {
-        @SerializedName("id")
+    public static class Trinket {
         String id;
     }
 
     
-    class Trinkets {
-        @SerializedName("items")
+    static class Trinkets {
         Map<Integer, Trinket> items = new LinkedTreeMap<>();
     }
     
-    @SerializedName("trinkets")
     Trinkets trinkets = new Trinkets();
     
     int id;
+    // Hash of the embedded hero file this was bound from, if any
+    long rawHash;
     
     void setID(int ID) {
         this.id = ID; 
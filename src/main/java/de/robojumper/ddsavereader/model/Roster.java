@@ -1,6 +1,8 @@
 package de.robojumper.ddsavereader.model;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -10,17 +12,18 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
-import com.google.gson.annotations.JsonAdapter;
-import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
+import de.robojumper.ddsavereader.file.DsonField;
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.model.helper.NameIndex;
+
 public class Roster extends AbstractFile {
     
     public static class HeroMapAdapter extends TypeAdapter<Map<Integer, Hero>> {
@@ -44,7 +47,7 @@ public class Roster extends AbstractFile {
                 if (!Objects.equals(in.nextName(), "base_root"))
                     throw new IOException();
                 
-                Hero h = SaveState.makeGson().fromJson(in, Hero.class);
+                Hero h = SaveState.GSON.getAdapter(Hero.class).read(in);
                 h.setID(id);
                 map.put(id, h);
                 
@@ -65,7 +68,7 @@ public class Roster extends AbstractFile {
             out.name("raw_data");
             out.beginObject();
             out.name("base_root");
-            SaveState.makeGson().toJson(in, new TypeToken<Map<Integer, Hero>>() {}.getType(), out);
+            SaveState.GSON.toJson(in, new TypeToken<Map<Integer, Hero>>() {}.getType(), out);
             out.endObject();
             out.endObject();
             out.endObject();
@@ -73,32 +76,138 @@ public class Roster extends AbstractFile {
 
     }
     
-    class LastParty {
-        @SerializedName("last_party_guids")
+    static class RosterDataAdapter extends TypeAdapter<RosterData> {
+
+        private static final HeroMapAdapter HEROES = new HeroMapAdapter();
+
+        @Override
+        public RosterData read(JsonReader in) throws IOException {
+            RosterData r = new RosterData();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                case "dismissed_hero_count":
+                    r.dismissedHeroCount = in.nextInt();
+                    break;
+                case "heroes":
+                    r.heroes = HEROES.read(in);
+                    break;
+                case "last_party":
+                    r.party = readLastParty(in);
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return r;
+        }
+
+        static LastParty readLastParty(JsonReader in) throws IOException {
+            LastParty p = new LastParty();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("last_party_guids")) {
+                    in.skipValue();
+                    continue;
+                }
+                List<Integer> guids = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    guids.add(in.nextInt());
+                }
+                in.endArray();
+                p.lastPartyGuids = guids.stream().mapToInt(Integer::intValue).toArray();
+            }
+            in.endObject();
+            return p;
+        }
+
+        @Override
+        public void write(JsonWriter out, RosterData value) throws IOException {
+            throw new IOException("Saving rosters not supported");
+        }
+    }
+    
+    static class LastParty {
         int[] lastPartyGuids = new int[0];
     }
     
-    class RosterData {
-        @SerializedName("dismissed_hero_count")
+    static class RosterData {
         private int dismissedHeroCount = -1;
         
-        @SerializedName("heroes")
-        @JsonAdapter(HeroMapAdapter.class)
-        private final Map<Integer, Hero> heroes = new HashMap<>();
+        private Map<Integer, Hero> heroes = new HashMap<>();
         
-        @SerializedName("last_party")
         LastParty party = new LastParty();
     }
 
     private RosterData rosterData = new RosterData();
+    // Normalized hero name -> id, built once per update
+    private NameIndex<Integer> heroNames = new NameIndex<>(Collections.emptyMap());
     
     @Override
     public void update(String json) {
-        JsonObject o = JsonParser.parseString(json).getAsJsonObject();
-        o = o.getAsJsonObject("base_root");
-        
-        Gson g = SaveState.makeGson();
-        this.rosterData = g.fromJson(o, RosterData.class);
+        this.rosterData = readBaseRoot(json, RosterData.class);
+        buildNameIndex();
+    }
+    
+    /**
+     * Every hero is an embedded file of its own. Saving usually changes only a
+     * few of them (stress, xp), so heroes whose embedded file has the same raw
+     * bytes as in the previous version are taken from there, and only the
+     * changed ones are bound.
+     */
+    @Override
+    public void update(DsonFile file, AbstractFile previous, long version) {
+        Map<Integer, Hero> prevHeroes = previous instanceof Roster ? ((Roster) previous).rosterData.heroes
+                : Collections.emptyMap();
+        RosterData r = new RosterData();
+        DsonField dismissed = file.getField("base_root/dismissed_hero_count");
+        if (dismissed != null) {
+            r.dismissedHeroCount = dismissed.getIntValue();
+        }
+        DsonField heroes = file.getField("base_root/heroes");
+        if (heroes != null) {
+            for (DsonField h : uniqueChildren(heroes)) {
+                Integer id = Integer.valueOf(h.name);
+                DsonField data = h.getChild("hero_file_data");
+                DsonField raw = data != null ? data.getChild("raw_data") : null;
+                if (raw == null || raw.embeddedFile == null) {
+                    throw new JsonParseException("Hero " + h.name + " has no hero_file_data/raw_data");
+                }
+                long hash = file.getFieldHash(raw);
+                Hero hero = prevHeroes.get(id);
+                if (hero == null || hero.rawHash != hash) {
+                    hero = readBaseRoot(toRawJson(raw.embeddedFile), Hero.class);
+                    hero.setID(id);
+                    hero.rawHash = hash;
+                }
+                r.heroes.put(id, hero);
+            }
+        }
+        DsonField party = file.getField("base_root/last_party");
+        if (party != null) {
+            try (JsonReader in = new JsonReader(new StringReader(toRawJson(file, party)))) {
+                in.beginObject();
+                in.nextName();
+                r.party = RosterDataAdapter.readLastParty(in);
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+        this.rosterData = r;
+        buildNameIndex();
+    }
+    
+    private void buildNameIndex() {
+        Map<String, Integer> names = new HashMap<>();
+        for (Map.Entry<Integer, Hero> e : rosterData.heroes.entrySet()) {
+            if (e.getValue().data != null && e.getValue().data.name != null) {
+                // First hero wins if two names normalize to the same string
+                names.putIfAbsent(SaveState.normalizeQueryString(e.getValue().data.name), e.getKey());
+            }
+        }
+        this.heroNames = new NameIndex<>(names);
     }
     
     public Hero getHero(Integer id) {
@@ -113,14 +222,19 @@ public class Roster extends AbstractFile {
     }
     
     public Integer getHeroID(String heroName) {
-        String normalizedHeroName = SaveState.normalizeQueryString(heroName);
-        for (Map.Entry<Integer, Hero> e : rosterData.heroes.entrySet()) {
-            String normalizedEName = SaveState.normalizeQueryString(e.getValue().data.name);
-            if (normalizedEName.equals(normalizedHeroName)) {
-                return e.getKey();
-            }
-        }
-        return null;
+        return heroNames.exact(SaveState.normalizeQueryString(heroName));
+    }
+    
+    /**
+     * Like {@link #getHero(String)}, but also accepts a unique prefix of the
+     * name or a name with a typo or two, for user input.
+     */
+    public Hero findHero(String query) {
+        return getHero(findHeroID(query));
+    }
+    
+    public Integer findHeroID(String query) {
+        return heroNames.find(SaveState.normalizeQueryString(query));
     }
     
     public Collection<Hero> getHeroes() {
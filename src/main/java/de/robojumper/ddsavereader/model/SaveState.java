@@ -2,25 +2,45 @@ package de.robojumper.ddsavereader.model;
 
 import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.TypeAdapter;
 
+import de.robojumper.ddsavereader.file.DsonFile;
 import de.robojumper.ddsavereader.model.CampaignLog.Chapter;
 import de.robojumper.ddsavereader.model.helper.HashedString;
 
 /**
  * Class that manages the current save state of a game.
  * Provides functions to update and query the current save state.
+ * Every update publishes a new immutable {@link Snapshot}. Readers never wait
+ * for updates and never see a file change while they are using a snapshot.
+ * File names may start with the directory of their profile below the watched
+ * save directory (e.g. "profile_0/persist.roster.json"), every profile has its
+ * own snapshots. {@link #snapshot()} is the profile that was saved last, which
+ * is the one being played.
  * This class has a very high throughput of data, as Darkest Dungeon
  * saves its state pretty much constantly. Hence, there's not a whole
  * lot of optimization wrt data structures, as the cost of rebuilding
  * them probably exceeds the cost of the one or two queries we expect
  * before the data becomes updated again.
- * In fact, it may even be beneficial to not deserialize at all, and
- * instead get to the relevant data just with a JsonParser.
+ * Files are bound by streaming adapters that skip everything we don't
+ * use, see {@link #GSON}.
  * @author robojumper
  *
  */
@@ -37,7 +57,25 @@ public class SaveState {
     }
 
     public static final List<TypeAdapterMapping<?>> GLOBAL_TYPE_ADAPTERS = new ArrayList<>();
-    
+
+    static {
+        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<HashedString>(HashedString.class, HashedString.ADAPTER));
+        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<Chapter>(Chapter.class, new CampaignLog.ChapterAdapter()));
+        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<Hero>(Hero.class, new Hero.HeroAdapter()));
+        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<Roster.RosterData>(Roster.RosterData.class, new Roster.RosterDataAdapter()));
+        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<Estate.EstateData>(Estate.EstateData.class, new Estate.EstateDataAdapter()));
+        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<Town.TownData>(Town.TownData.class, new Town.TownDataAdapter()));
+        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<CampaignLog.CampaignLogData>(CampaignLog.CampaignLogData.class, new CampaignLog.CampaignLogDataAdapter()));
+    }
+
+    /**
+     * Shared instance with all {@link #GLOBAL_TYPE_ADAPTERS}. The model classes
+     * are bound by hand-written streaming adapters, so this never falls back to
+     * reflection for them. Gson is thread-safe, use this instead of building a
+     * new one per file (or per hero).
+     */
+    public static final Gson GSON = makeGson();
+
     public static Gson makeGson() {
         GsonBuilder b = new GsonBuilder();
         for (TypeAdapterMapping<?> m : GLOBAL_TYPE_ADAPTERS) {
@@ -46,89 +84,293 @@ public class SaveState {
         return b.create();
     }
     
-    class Cache<T extends AbstractFile> {
-        private T data;
-        private boolean dirty;
-        private String jsonData;
-        
-        public Cache(T t) {
-            this.data = t;
-            this.dirty = false;
-            this.jsonData = "";
+    // One version of one file. The model object is built from the JSON or the
+    // decoded file the first time it is needed and never changed afterwards.
+    // Concurrent readers share that build, readers of other files are never
+    // blocked by it.
+    static final class Cache<T extends AbstractFile> {
+        private final FutureTask<T> build;
+        // The newest built older version, for files that update incrementally.
+        // Dropped once this one is built so that old versions don't pile up.
+        private volatile T base;
+
+        Cache(Supplier<T> factory, String jsonData) {
+            this(factory, jsonData, null, null, 0);
         }
-        
-        public T get() {
-            synchronized (SaveState.this) {
-                if (this.dirty) {
-                    this.data.update(jsonData);
-                    this.dirty = false;
+
+        Cache(Supplier<T> factory, String jsonData, DsonFile file, Cache<T> previous, long version) {
+            this.base = previous != null ? previous.builtOrBase() : null;
+            this.build = new FutureTask<>(() -> {
+                T t = factory.get();
+                if (file != null) {
+                    t.update(file, base, version);
+                } else if (jsonData != null) {
+                    t.update(jsonData);
+                }
+                base = null;
+                return t;
+            });
+        }
+
+        // The built file if it has been built successfully, otherwise the one
+        // it would be built from
+        private T builtOrBase() {
+            if (build.isDone()) {
+                try {
+                    return build.get();
+                } catch (InterruptedException | ExecutionException | CancellationException e) {
+                    // Fall through
                 }
             }
-            return this.data;
+            return base;
         }
-        
-        public void update(String jsonData) {
-            synchronized (SaveState.this) {
-                this.jsonData = jsonData;
-                this.dirty = true;
+
+        T get() {
+            // Does nothing if another thread is already building
+            build.run();
+            try {
+                return build.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
             }
         }
-        
     }
 
-    private Cache<Roster> roster = new Cache<>(new Roster());
-    private Cache<Estate> estate = new Cache<>(new Estate());
-    private Cache<Town> town = new Cache<>(new Town());
-    private Cache<CampaignLog> campaignLog = new Cache<>(new CampaignLog());
-    
-    
-    
-    
-    static {
-        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<HashedString>(HashedString.class, new HashedString.HashedStringAdapter()));
-        GLOBAL_TYPE_ADAPTERS.add(new TypeAdapterMapping<Chapter>(Chapter.class, new CampaignLog.ChapterAdapter()));
+    /**
+     * Immutable view of all files of one profile at one version. Queries that
+     * need several files should use one snapshot so that they don't see a mix
+     * of old and new files.
+     */
+    public static final class Snapshot {
+        public final long version;
+        // Directory of the profile below the save directory, "" for files
+        // directly in it
+        public final String profile;
+        private final Cache<Roster> roster;
+        private final Cache<Estate> estate;
+        private final Cache<Town> town;
+        private final Cache<CampaignLog> campaignLog;
+
+        Snapshot(long version, String profile) {
+            this(version, profile, new Cache<>(Roster::new, null), new Cache<>(Estate::new, null),
+                    new Cache<>(Town::new, null), new Cache<>(CampaignLog::new, null));
+        }
+
+        Snapshot(long version, String profile, Cache<Roster> roster, Cache<Estate> estate, Cache<Town> town,
+                Cache<CampaignLog> campaignLog) {
+            this.version = version;
+            this.profile = profile;
+            this.roster = roster;
+            this.estate = estate;
+            this.town = town;
+            this.campaignLog = campaignLog;
+        }
+
+        // Returns a snapshot with the file replaced by either the JSON data or
+        // the decoded file, or null if the file is not part of the save state.
+        // fileName is without the profile.
+        Snapshot with(long version, String fileName, String jsonData, DsonFile file) {
+            switch (fileName) {
+                case "persist.roster.json":
+                    return new Snapshot(version, profile, new Cache<>(Roster::new, jsonData, file, roster, version),
+                            estate, town, campaignLog);
+                case "persist.estate.json":
+                    return new Snapshot(version, profile, roster,
+                            new Cache<>(Estate::new, jsonData, file, estate, version), town, campaignLog);
+                case "persist.town.json":
+                    return new Snapshot(version, profile, roster, estate,
+                            new Cache<>(Town::new, jsonData, file, town, version), campaignLog);
+                case "persist.campaign_log.json":
+                    return new Snapshot(version, profile, roster, estate, town,
+                            new Cache<>(CampaignLog::new, jsonData, file, campaignLog, version));
+                default:
+                    return null;
+            }
+        }
+
+        public Roster getRoster() {
+            return roster.get();
+        }
+
+        public Estate getEstate() {
+            return estate.get();
+        }
+
+        public Town getTown() {
+            return town.get();
+        }
+
+        public CampaignLog getCampaignLog() {
+            return campaignLog.get();
+        }
     }
 
+    // Snapshots of all profiles at one version
+    private static final class Profiles {
+        final long version;
+        // The profile that was updated last
+        final Snapshot active;
+        final Map<String, Snapshot> snapshots;
+
+        Profiles(long version, Snapshot active, Map<String, Snapshot> snapshots) {
+            this.version = version;
+            this.active = active;
+            this.snapshots = snapshots;
+        }
+    }
+
+    private final AtomicReference<Profiles> current = new AtomicReference<>(
+            new Profiles(0, new Snapshot(0, ""), Collections.emptyMap()));
+    private final List<LongConsumer> updateListeners = new CopyOnWriteArrayList<>();
+    
+
 
 
     public void update(String fileName, String jsonData) {
-        switch (fileName) {
-            case "persist.roster.json":
-                roster.update(jsonData);
-                break;
-            case "persist.estate.json":
-                estate.update(jsonData);
-                break;
-            case "persist.town.json":
-                town.update(jsonData);
-                break;
-            case "persist.campaign_log.json":
-                campaignLog.update(jsonData);
-                break;
-            default:
-                break;
+        updateAll(Collections.singletonMap(fileName, jsonData));
+    }
+
+    /**
+     * Updates several files at once, e.g. all files written by one save of the
+     * game. Queries never see a mix of old and new files, and listeners are
+     * notified once.
+     * 
+     * @param files File name -> JSON data
+     */
+    public void updateAll(Map<String, String> files) {
+        apply(files.keySet(),
+                (s, version, fileName) -> s.with(version, getFileName(fileName), files.get(fileName), null));
+    }
+
+    /**
+     * Same as {@link #updateAll(Map)}, but with the decoded files. Files that
+     * support it only rebuild what changed since their last version, see
+     * {@link AbstractFile#update(DsonFile, AbstractFile, long)}.
+     * 
+     * @param files File name -> decoded file
+     */
+    public void updateFiles(Map<String, DsonFile> files) {
+        apply(files.keySet(),
+                (s, version, fileName) -> s.with(version, getFileName(fileName), null, files.get(fileName)));
+    }
+
+    private interface FileUpdate {
+        Snapshot apply(Snapshot s, long version, String fileName);
+    }
+
+    private void apply(Iterable<String> fileNames, FileUpdate update) {
+        Profiles prev, next;
+        do {
+            prev = current.get();
+            long version = prev.version + 1;
+            Map<String, Snapshot> snapshots = null;
+            Snapshot active = prev.active;
+            for (String fileName : fileNames) {
+                String profile = getProfile(fileName);
+                Snapshot old = snapshots != null ? snapshots.get(profile) : prev.snapshots.get(profile);
+                Snapshot s = update.apply(old != null ? old : new Snapshot(0, profile), version, fileName);
+                if (s != null) {
+                    if (snapshots == null) {
+                        snapshots = new HashMap<>(prev.snapshots);
+                    }
+                    snapshots.put(profile, s);
+                    active = s;
+                }
+            }
+            if (snapshots == null) {
+                return;
+            }
+            // Profiles updated earlier in the same save get the same version,
+            // so the active one is always at the newest version
+            next = new Profiles(version, active, Collections.unmodifiableMap(snapshots));
+        } while (!current.compareAndSet(prev, next));
+        for (LongConsumer l : updateListeners) {
+            l.accept(next.version);
         }
     }
 
+    /**
+     * @return The current version of all files of the profile that was
+     *         updated last. Never blocks.
+     */
+    public Snapshot snapshot() {
+        return current.get().active;
+    }
+
+    /**
+     * @param profile Directory of the profile, see {@link Snapshot#profile}
+     * @return The current version of all files of the profile, empty if it
+     *         wasn't updated yet. Never blocks.
+     */
+    public Snapshot snapshot(String profile) {
+        Snapshot s = current.get().snapshots.get(profile);
+        return s != null ? s : new Snapshot(0, profile);
+    }
+
+    /**
+     * @return All profiles that were updated so far
+     */
+    public Set<String> getProfiles() {
+        return new TreeSet<>(current.get().snapshots.keySet());
+    }
+
+    /**
+     * @return A number that increases with every update
+     */
+    public long getVersion() {
+        return current.get().version;
+    }
+
+    // "profile_0/persist.roster.json" -> "profile_0", "persist.roster.json" -> ""
+    static String getProfile(String fileName) {
+        int slash = fileName.lastIndexOf('/');
+        return slash < 0 ? "" : fileName.substring(0, slash);
+    }
+
+    // "profile_0/persist.roster.json" -> "persist.roster.json"
+    static String getFileName(String fileName) {
+        return fileName.substring(fileName.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Adds a listener that is called with the new version after every update.
+     * Listeners are called on the updating thread.
+     */
+    public void addUpdateListener(LongConsumer listener) {
+        updateListeners.add(listener);
+    }
+
+    public void removeUpdateListener(LongConsumer listener) {
+        updateListeners.remove(listener);
+    }
+
     
     public Roster getRoster() {
-        return roster.get();
+        return snapshot().getRoster();
     }
     
     public Estate getEstate() {
-        return estate.get();
+        return snapshot().getEstate();
     }
     
     public Town getTown() {
-        return town.get();
+        return snapshot().getTown();
     }
     
     public CampaignLog getCampaignLog() {
-        return campaignLog.get();
+        return snapshot().getCampaignLog();
     }
 
     // https://stackoverflow.com/questions/8519669/replace-non-ascii-character-from-string/17786019
+    private static final Pattern NON_ASCII = Pattern.compile("[^\\x00-\\x7F]");
+
     public static String normalizeQueryString(String input) {
-        return Normalizer.normalize(input, Normalizer.Form.NFD).replaceAll("[^\\x00-\\x7F]", "").toLowerCase();
+        return NON_ASCII.matcher(Normalizer.normalize(input, Normalizer.Form.NFD)).replaceAll("").toLowerCase();
     }
 }
@@ -2,18 +2,12 @@ package de.robojumper.ddsavereader.model;
 
 import java.io.IOException;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.TypeAdapter;
-import com.google.gson.annotations.JsonAdapter;
-import com.google.gson.annotations.SerializedName;
 import com.google.gson.internal.LinkedTreeMap;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 
@@ -24,16 +18,30 @@ public class Town extends AbstractFile {
         @Override
         public Map<Integer, String> read(JsonReader in) throws IOException {
             Map<Integer, String> map = new LinkedTreeMap<>();
-            JsonObject o = JsonParser.parseReader(in).getAsJsonObject();
-            for (Entry<String, JsonElement> e : o.entrySet()) {
-                String activityName = e.getKey();
-                for (Entry<String, JsonElement> slot : e.getValue().getAsJsonObject().entrySet()) {
-                    if (slot.getValue().isJsonObject() && slot.getValue().getAsJsonObject().has("hero")) {
-                        map.put(slot.getValue().getAsJsonObject().getAsJsonPrimitive("hero").getAsInt(), activityName);
+            in.beginObject();
+            while (in.hasNext()) {
+                String activityName = in.nextName();
+                in.beginObject();
+                while (in.hasNext()) {
+                    in.nextName();
+                    // Slots are objects, other fields of the activity are not
+                    if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                        in.skipValue();
+                        continue;
                     }
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (in.nextName().equals("hero")) {
+                            map.put(in.nextInt(), activityName);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
                 }
+                in.endObject();
             }
-            
+            in.endObject();
             return map;
         }
 
@@ -44,30 +52,102 @@ public class Town extends AbstractFile {
 
     }
 
-    class TownData {
+    static class TownDataAdapter extends TypeAdapter<TownData> {
+
+        private static final BuildingActivitiesTypeAdapter ACTIVITIES = new BuildingActivitiesTypeAdapter();
+
+        @Override
+        public TownData read(JsonReader in) throws IOException {
+            TownData t = new TownData();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                case "buildings":
+                    readBuildings(in, t.buildings);
+                    break;
+                case "districts":
+                    t.districts = readDistricts(in);
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return t;
+        }
+
+        private static void readBuildings(JsonReader in, Map<String, TownData.Building> buildings) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                TownData.Building b = new TownData.Building();
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (in.nextName().equals("activities")) {
+                        b.activities = ACTIVITIES.read(in);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                buildings.put(name, b);
+            }
+            in.endObject();
+        }
+
+        private static TownData.DistrictsObject readDistricts(JsonReader in) throws IOException {
+            TownData.DistrictsObject d = new TownData.DistrictsObject();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("buildings")) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    TownData.DistrictsObject.District district = new TownData.DistrictsObject.District();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (in.nextName().equals("built")) {
+                            district.built = in.nextBoolean();
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    d.districts.put(name, district);
+                }
+                in.endObject();
+            }
+            in.endObject();
+            return d;
+        }
+
+        @Override
+        public void write(JsonWriter out, TownData value) throws IOException {
+            throw new IOException("Saving the town not supported");
+        }
+    }
+
+    static class TownData {
         
-        class Building {
+        static class Building {
             
-            @SerializedName("activities")
-            @JsonAdapter(BuildingActivitiesTypeAdapter.class)
             Map<Integer, String> activities = new LinkedTreeMap<>(); // Hero -> Activity
         }
         
-        @SerializedName("buildings")
         Map<String, Building> buildings = new LinkedTreeMap<>();
         
-        class DistrictsObject {
+        static class DistrictsObject {
             
-            class District {
-                @SerializedName("built")
+            static class District {
                 boolean built = false;
             }
             
-            @SerializedName("buildings")
             Map<String, District> districts = new LinkedTreeMap<>();
         }
         
-        @SerializedName("districts")
         DistrictsObject districts = new DistrictsObject();
         
         
@@ -77,11 +157,7 @@ public class Town extends AbstractFile {
     
     @Override
     public void update(String json) {
-        JsonObject o = JsonParser.parseString(json).getAsJsonObject();
-        o = o.getAsJsonObject("base_root");
-        
-        Gson g = SaveState.makeGson();
-        this.townData = g.fromJson(o, TownData.class);
+        this.townData = readBaseRoot(json, TownData.class);
     }
     
     public String getHeroActivity(Integer id) {
@@ -33,6 +33,8 @@ public class HashedString {
         this.hashValue = DsonTypes.stringHash(str);
     }
 
+    public static final HashedStringAdapter ADAPTER = new HashedStringAdapter();
+
     public static class HashedStringAdapter extends TypeAdapter<HashedString> {
 
         @Override
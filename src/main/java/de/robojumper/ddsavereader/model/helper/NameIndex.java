@@ -0,0 +1,148 @@
+package de.robojumper.ddsavereader.model.helper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable lookup of values by name, for user input such as chat commands.
+ * Names are expected to be normalized already (see
+ * SaveState.normalizeQueryString).
+ *
+ * {@link #find(String)} tries an exact match, then a unique prefix, then the
+ * unique closest name within a small edit distance. Only names of a similar
+ * length are compared for the latter, so it stays cheap for large indices.
+ */
+public class NameIndex<T> {
+
+    private final Map<String, T> exact = new HashMap<>();
+    private final NavigableMap<String, T> sorted = new TreeMap<>();
+    // Names by length, for the edit distance search
+    private final List<List<String>> byLength = new ArrayList<>();
+
+    public NameIndex(Map<String, T> names) {
+        exact.putAll(names);
+        sorted.putAll(names);
+        for (String name : names.keySet()) {
+            while (byLength.size() <= name.length()) {
+                byLength.add(new ArrayList<>());
+            }
+            byLength.get(name.length()).add(name);
+        }
+    }
+
+    public T exact(String name) {
+        return exact.get(name);
+    }
+
+    // The value of the only name starting with prefix, null if there are
+    // none or several
+    public T prefix(String prefix) {
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        String first = sorted.ceilingKey(prefix);
+        if (first == null || !first.startsWith(prefix)) {
+            return null;
+        }
+        String second = sorted.higherKey(first);
+        if (second != null && second.startsWith(prefix)) {
+            return null;
+        }
+        return sorted.get(first);
+    }
+
+    // The value of the only closest name within maxDistance(name) edits, null
+    // if there are none or several
+    public T fuzzy(String name) {
+        int max = maxDistance(name);
+        if (max == 0) {
+            return null;
+        }
+        String best = null;
+        int bestDistance = max + 1;
+        boolean tie = false;
+        int from = Math.max(0, name.length() - max);
+        int to = Math.min(byLength.size() - 1, name.length() + max);
+        for (int len = from; len <= to; len++) {
+            for (String candidate : byLength.get(len)) {
+                int d = distance(name, candidate, Math.min(max, bestDistance));
+                if (d < bestDistance) {
+                    best = candidate;
+                    bestDistance = d;
+                    tie = false;
+                } else if (d == bestDistance && d <= max) {
+                    tie = true;
+                }
+            }
+        }
+        return best != null && !tie ? exact.get(best) : null;
+    }
+
+    public T find(String name) {
+        T t = exact(name);
+        if (t == null) {
+            t = prefix(name);
+        }
+        if (t == null) {
+            t = fuzzy(name);
+        }
+        return t;
+    }
+
+    public int size() {
+        return exact.size();
+    }
+
+    // Short names can't take many typos before they match something else
+    static int maxDistance(String name) {
+        if (name.length() < 3) {
+            return 0;
+        } else if (name.length() < 6) {
+            return 1;
+        }
+        return 2;
+    }
+
+    // Levenshtein distance of a and b, or limit + 1 if it is greater than limit.
+    // Only the diagonal band of width 2 * limit + 1 is computed.
+    static int distance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int big = limit + 1;
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j <= limit ? j : big;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int lo = Math.max(1, i - limit);
+            int hi = Math.min(b.length(), i + limit);
+            cur[0] = i <= limit ? i : big;
+            if (lo > 1) {
+                cur[lo - 1] = big;
+            }
+            int rowMin = cur[0];
+            for (int j = lo; j <= hi; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(prev[j - 1] + cost, Math.min(prev[j] + 1, cur[j - 1] + 1));
+                cur[j] = Math.min(d, big);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (hi < b.length()) {
+                cur[hi + 1] = big;
+            }
+            if (rowMin > limit) {
+                return big;
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[b.length()];
+    }
+}
@@ -0,0 +1,50 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.util.List;
+
+/**
+ * A rectangle of values on one sheet, starting at (row, col), both zero based.
+ * Rows may be shorter than the rectangle, missing cells are left alone.
+ */
+public class CellRange {
+
+    public final String sheet;
+    public final int row;
+    public final int col;
+    public final List<List<Object>> values;
+
+    public CellRange(String sheet, int row, int col, List<List<Object>> values) {
+        this.sheet = sheet;
+        this.row = row;
+        this.col = col;
+        this.values = values;
+    }
+
+    public int getWidth() {
+        return values.stream().mapToInt(List::size).max().orElse(0);
+    }
+
+    public int getHeight() {
+        return values.size();
+    }
+
+    // Range in A1 notation, e.g. Roster!B3:D7
+    public String toA1() {
+        return sheet + "!" + columnName(col) + (row + 1) + ":" + columnName(col + Math.max(1, getWidth()) - 1)
+                + (row + Math.max(1, getHeight()));
+    }
+
+    // A, B, ..., Z, AA, AB, ...
+    public static String columnName(int col) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = col + 1; c > 0; c = (c - 1) / 26) {
+            sb.append((char) ('A' + (c - 1) % 26));
+        }
+        return sb.reverse().toString();
+    }
+
+    @Override
+    public String toString() {
+        return toA1();
+    }
+}
@@ -0,0 +1,129 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.*;
+
+/**
+ * The Google Sheets API, one request per call.
+ */
+class GoogleSheetsApi implements SheetsApi {
+    static final int INFO_SHEET_ID = 543000;
+    static final int ROSTER_SHEET_ID = 543100;
+    static final int LOG_SHEET_ID = 543200;
+    static final int ESTATE_SHEET_ID = 543300;
+    static final int PARTY_SHEET_ID = 543400;
+
+    private static final Map<String, Integer> SHEET_IDS = new HashMap<>();
+
+    static {
+        SHEET_IDS.put(SheetTables.INFO, INFO_SHEET_ID);
+        SHEET_IDS.put(SheetTables.ROSTER, ROSTER_SHEET_ID);
+        SHEET_IDS.put(SheetTables.LOG, LOG_SHEET_ID);
+        SHEET_IDS.put(SheetTables.ESTATE, ESTATE_SHEET_ID);
+        SHEET_IDS.put(SheetTables.PARTY, PARTY_SHEET_ID);
+    }
+
+    private final Sheets service;
+    private final String spreadsheetId;
+
+    GoogleSheetsApi(Sheets service, String spreadsheetId) {
+        this.service = service;
+        this.spreadsheetId = spreadsheetId;
+    }
+
+    @Override
+    public Set<String> getSheetTitles() throws IOException {
+        System.out.println("Requesting spreadsheet " + spreadsheetId);
+        Spreadsheet spreadSheet = service.spreadsheets().get(spreadsheetId).execute();
+        System.out.println("Got spreadsheet");
+        return spreadSheet.getSheets().stream().map(s -> s.getProperties().getTitle()).collect(Collectors.toSet());
+    }
+
+    @Override
+    public void addSheets(Collection<String> titles) throws IOException {
+        List<Request> requests = new ArrayList<>();
+        for (String title : titles) {
+            int id = SHEET_IDS.get(title);
+            if (title.equals(SheetTables.INFO)) {
+                requests.add(new Request().setAddSheet(new AddSheetRequest()
+                        .setProperties(new SheetProperties().setTitle(title).setSheetId(id))));
+            } else if (title.equals(SheetTables.PARTY)) {
+                requests.add(new Request().setAddSheet(new AddSheetRequest()
+                        .setProperties(new SheetProperties().setTitle(title).setSheetId(id)
+                                .setGridProperties(new GridProperties().setFrozenColumnCount(0)))));
+                requests.add(new Request().setRepeatCell(new RepeatCellRequest()
+                        .setRange(new GridRange().setSheetId(id).setStartColumnIndex(0).setEndColumnIndex(1))
+                        .setCell(new CellData().setUserEnteredFormat(
+                                new CellFormat().setTextFormat(new TextFormat().setBold(Boolean.TRUE))))
+                        .setFields("*")));
+            } else {
+                addSheetSetupRequests(requests, id, title);
+            }
+        }
+        execute(requests);
+    }
+
+    @Override
+    public void setPartyLayout(List<Integer> slots) throws IOException {
+        List<Request> requests = new ArrayList<>();
+        requests.add(new Request().setUnmergeCells(new UnmergeCellsRequest()
+                .setRange(new GridRange().setSheetId(PARTY_SHEET_ID).setStartRowIndex(1))));
+        // First of all, clear all cell borders
+        requests.add(new Request().setUpdateBorders(new UpdateBordersRequest()
+                .setRange(new GridRange().setSheetId(PARTY_SHEET_ID).setStartRowIndex(0))
+                .setBottom(new Border().setStyle("NONE")).setTop(new Border().setStyle("NONE"))
+                .setLeft(new Border().setStyle("NONE")).setRight(new Border().setStyle("NONE"))
+                .setInnerHorizontal(new Border().setStyle("NONE"))
+                .setInnerVertical(new Border().setStyle("NONE"))));
+
+        for (int slot : slots) {
+            int startCol = SheetTables.getPartyColumn(slot);
+            GridRange g = new GridRange().setSheetId(PARTY_SHEET_ID).setStartRowIndex(0)
+                    .setEndRowIndex(SheetTables.PARTY_ROWS).setStartColumnIndex(startCol)
+                    .setEndColumnIndex(startCol + 2);
+            // Then, merge some cells and give them a border
+            requests.add(new Request()
+                    .setMergeCells(new MergeCellsRequest().setRange(g).setMergeType("MERGE_ROWS")));
+
+            requests.add(new Request().setUpdateBorders(new UpdateBordersRequest().setRange(g)
+                    .setLeft(new Border().setStyle("SOLID")).setTop(new Border().setStyle("SOLID"))
+                    .setRight(new Border().setStyle("SOLID")).setBottom(new Border().setStyle("SOLID"))));
+        }
+        execute(requests);
+    }
+
+    @Override
+    public void updateValues(List<CellRange> ranges) throws IOException {
+        List<ValueRange> data = new ArrayList<>(ranges.size());
+        for (CellRange r : ranges) {
+            data.add(new ValueRange().setRange(r.toA1()).setValues(r.values));
+        }
+        BatchUpdateValuesRequest body = new BatchUpdateValuesRequest().setValueInputOption("RAW").setData(data);
+        service.spreadsheets().values().batchUpdate(spreadsheetId, body).execute();
+    }
+
+    private void execute(List<Request> requests) throws IOException {
+        BatchUpdateSpreadsheetRequest body = new BatchUpdateSpreadsheetRequest().setRequests(requests);
+        service.spreadsheets().batchUpdate(spreadsheetId, body).execute();
+    }
+
+    private static void addSheetSetupRequests(List<Request> requests, int ID, String title) {
+        requests.add(new Request().setAddSheet(new AddSheetRequest().setProperties(new SheetProperties()
+                .setTitle(title).setSheetId(ID).setGridProperties(new GridProperties().setFrozenRowCount(1)))));
+
+        requests.add(new Request().setRepeatCell(new RepeatCellRequest()
+                .setRange(new GridRange().setSheetId(ID).setStartRowIndex(0).setEndRowIndex(1))
+                .setCell(new CellData().setUserEnteredFormat(
+                        new CellFormat().setTextFormat(new TextFormat().setBold(Boolean.TRUE))))
+                .setFields("*")));
+    }
+}
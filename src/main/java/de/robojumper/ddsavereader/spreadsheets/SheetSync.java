@@ -0,0 +1,95 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.robojumper.ddsavereader.model.SaveState;
+
+/**
+ * Pushes the {@link SheetTables} of a snapshot to a spreadsheet. The tables
+ * sent last are kept, so only changed cells are sent, and nothing at all if
+ * nothing changed. The Info sheet's timestamp is only updated together with
+ * other changes.
+ *
+ * If a request fails, the spreadsheet's state is unknown and the next sync
+ * sends everything again.
+ */
+public class SheetSync {
+
+    private final SheetsApi api;
+
+    private boolean sheetsChecked = false;
+    private List<Integer> partySlots = null;
+    private final Map<String, List<List<Object>>> pushed = new HashMap<>();
+
+    public SheetSync(SheetsApi api) {
+        this.api = api;
+    }
+
+    /**
+     * @return Whether any values were sent.
+     */
+    public boolean sync(SaveState.Snapshot snapshot) throws IOException {
+        try {
+            if (!sheetsChecked) {
+                Set<String> titles = api.getSheetTitles();
+                List<String> missing = new ArrayList<>();
+                for (String title : Arrays.asList(SheetTables.INFO, SheetTables.ROSTER, SheetTables.LOG,
+                        SheetTables.ESTATE, SheetTables.PARTY)) {
+                    if (!titles.contains(title)) {
+                        missing.add(title);
+                    }
+                }
+                if (!missing.isEmpty()) {
+                    api.addSheets(missing);
+                }
+                sheetsChecked = true;
+            }
+
+            Map<String, List<List<Object>>> tables = new LinkedHashMap<>();
+            tables.put(SheetTables.ROSTER, SheetTables.makeRosterTable(snapshot));
+            tables.put(SheetTables.LOG, SheetTables.makeLogTable(snapshot));
+            tables.put(SheetTables.ESTATE, SheetTables.makeEstateTable(snapshot));
+            tables.put(SheetTables.PARTY, SheetTables.makePartyTable(snapshot));
+
+            List<Integer> slots = SheetTables.getPartySlots(snapshot);
+            if (!slots.equals(partySlots)) {
+                api.setPartyLayout(slots);
+                partySlots = slots;
+            }
+
+            List<CellRange> ranges = new ArrayList<>();
+            for (Map.Entry<String, List<List<Object>>> e : tables.entrySet()) {
+                ranges.addAll(TableDiff.diff(e.getKey(), pushed.get(e.getKey()), e.getValue()));
+            }
+            if (ranges.isEmpty()) {
+                return false;
+            }
+            ranges.add(0, new CellRange(SheetTables.INFO, 0, 0,
+                    Collections.singletonList(Collections.singletonList("Save Data, last updated at "
+                            + new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(new Date())))));
+            api.updateValues(ranges);
+            pushed.putAll(tables);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    // Sends everything on the next sync
+    public void reset() {
+        sheetsChecked = false;
+        partySlots = null;
+        pushed.clear();
+    }
+}
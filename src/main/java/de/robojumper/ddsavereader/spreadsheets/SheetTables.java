@@ -0,0 +1,155 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import de.robojumper.ddsavereader.model.CampaignLog.BaseRTTI;
+import de.robojumper.ddsavereader.model.CampaignLog.Chapter;
+import de.robojumper.ddsavereader.model.Hero;
+import de.robojumper.ddsavereader.model.SaveState;
+
+/**
+ * The tables shown on the spreadsheet, built from one snapshot. Every call
+ * returns new lists that aren't modified afterwards, so they can be kept
+ * around to compare against the next version.
+ */
+public final class SheetTables {
+
+    public static final String INFO = "Info";
+    public static final String ROSTER = "Roster";
+    public static final String LOG = "Log";
+    public static final String ESTATE = "Estate";
+    public static final String PARTY = "Party";
+
+    // Name + level + XP + space + 7 skills + space + 3 camping + space +
+    // 2 trinkets + space + quests + kills
+    public static final int PARTY_ROWS = 21;
+
+    private SheetTables() {
+    }
+
+    public static List<List<Object>> makeRosterTable(SaveState.Snapshot state) {
+        List<List<Object>> rows = new ArrayList<>();
+
+        for (Hero h : state.getRoster().getHeroes()) {
+            rows.add(Arrays.asList(h.getID(), h.getName(), h.getStatus().toString(), h.getHeroClass(),
+                    h.getXP(), h.getKills(), state.getCampaignLog().getHeroLevel(h.getID()), h.getQuirks()));
+        }
+        rows.sort((a, b) -> Integer.compare((Integer) a.get(0), (Integer) b.get(0)));
+        rows.add(0, Arrays.asList("ID", "Name", "Status", "Class", "XP", "Kills", "Level", "Quirks"));
+        return rows;
+    }
+
+    public static List<List<Object>> makeLogTable(SaveState.Snapshot state) {
+        List<List<Object>> rows = new ArrayList<>();
+        rows.add(Arrays.asList("Week", "Type"));
+        rows.add(new ArrayList<>());
+        for (Chapter c : state.getCampaignLog().getChapters()) {
+            addChapterRows(rows, c, c.events);
+        }
+        return rows;
+    }
+
+    // The rows of some events of a chapter, followed by an empty row. Only
+    // the first row shows the week.
+    public static void addChapterRows(List<List<Object>> rows, Chapter c, List<BaseRTTI> events) {
+        boolean first = true;
+        for (BaseRTTI e : events) {
+            List<Object> row = new ArrayList<>();
+            if (first) {
+                row.add(c.chapterIndex);
+                first = false;
+            } else {
+                row.add("");
+            }
+            row.addAll(e.getCells());
+            rows.add(row);
+        }
+        rows.add(new ArrayList<>());
+    }
+
+    public static List<List<Object>> makeEstateTable(SaveState.Snapshot state) {
+        List<List<Object>> rows = new ArrayList<>();
+        rows.add(Arrays.asList("Resource", "Amount"));
+        rows.add(new ArrayList<>());
+        for (Map.Entry<String, Integer> e : state.getEstate().getResources().entrySet()) {
+            rows.add(Arrays.asList(e.getKey(), e.getValue()));
+        }
+        return rows;
+    }
+
+    // The party slots that have a hero
+    public static List<Integer> getPartySlots(SaveState.Snapshot state) {
+        List<Integer> slots = new ArrayList<>();
+        List<Hero> party = state.getRoster().getParty();
+        for (int i = 0; i < party.size(); i++) {
+            if (party.get(i) != null) {
+                slots.add(i);
+            }
+        }
+        return slots;
+    }
+
+    // Column of the given party slot, every hero gets two (merged) columns
+    public static int getPartyColumn(int slot) {
+        return slot * 2 + 1;
+    }
+
+    // Headers in the first column, then the heroes in their slot's column
+    public static List<List<Object>> makePartyTable(SaveState.Snapshot state) {
+        List<List<Object>> columns = new ArrayList<>();
+        columns.add(Arrays.asList("Name", "Class", "XP", "", "Skills", "", "", "", "", "", "", "", "Camping Skills",
+                "", "", "", "Trinkets", "", "", "Quests", "Kills"));
+
+        List<Hero> party = state.getRoster().getParty();
+        for (int i = 0; i < party.size(); i++) {
+            Hero h = party.get(i);
+            if (h != null) {
+                List<Object> rows = new ArrayList<>(PARTY_ROWS);
+                rows.add(h.getName());
+                rows.add("Level " + state.getCampaignLog().getHeroLevel(h.getID()) + " " + h.getHeroClass());
+                rows.add(h.getXP() + " XP");
+                rows.add("");
+                rows.addAll(h.getSkills());
+                pad(rows, 11);
+                rows.add("");
+                rows.addAll(h.getCampingSkills());
+                pad(rows, 15);
+                rows.add("");
+                rows.addAll(h.getTrinkets());
+                pad(rows, 18);
+                rows.add("");
+                rows.add(state.getCampaignLog().getHeroMissionCount(h.getID()) + " Quests");
+                rows.add(h.getKills() + " Kills");
+
+                while (columns.size() < getPartyColumn(i)) {
+                    columns.add(Collections.emptyList());
+                }
+                columns.add(rows);
+            }
+        }
+        return transpose(columns);
+    }
+
+    private static void pad(List<Object> rows, int size) {
+        while (rows.size() < size) {
+            rows.add("");
+        }
+    }
+
+    private static List<List<Object>> transpose(List<List<Object>> columns) {
+        int height = columns.stream().mapToInt(List::size).max().orElse(0);
+        List<List<Object>> rows = new ArrayList<>(height);
+        for (int r = 0; r < height; r++) {
+            List<Object> row = new ArrayList<>(columns.size());
+            for (List<Object> column : columns) {
+                row.add(r < column.size() ? column.get(r) : "");
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,24 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The spreadsheet calls the {@link SheetSync} needs. Every method is a single
+ * request to the spreadsheet service.
+ */
+public interface SheetsApi {
+
+    Set<String> getSheetTitles() throws IOException;
+
+    // Adds and formats the given sheets (see SheetTables)
+    void addSheets(Collection<String> titles) throws IOException;
+
+    // Merges and frames the columns of the given party slots, and removes the
+    // previous merges and frames
+    void setPartyLayout(List<Integer> slots) throws IOException;
+
+    void updateValues(List<CellRange> ranges) throws IOException;
+}
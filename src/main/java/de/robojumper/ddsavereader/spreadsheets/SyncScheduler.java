@@ -0,0 +1,152 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+import de.robojumper.ddsavereader.model.SaveState;
+
+/**
+ * Runs a sync whenever the save state has a new version, instead of polling.
+ *
+ * Versions that come in quick succession are coalesced into one run: a run
+ * happens once no new version has come in for delay, but no later than
+ * maxStaleness after the first version it covers. Runs are at least
+ * minSpacing apart, and never overlap. Versions that come in during a run are
+ * covered by the next one. While the game doesn't save, nothing runs.
+ * If a run throws, it is retried maxStaleness later.
+ * Times are nanoTime values from the clock, System.nanoTime() outside of tests.
+ */
+public class SyncScheduler implements LongConsumer {
+
+    public static final long DEFAULT_DELAY_MS = 250;
+    public static final long DEFAULT_MIN_SPACING_MS = 1000;
+    public static final long DEFAULT_MAX_STALENESS_MS = 5000;
+
+    private final SaveState state;
+    private final Runnable sync;
+    private final ScheduledExecutorService executor;
+    private final LongSupplier clock;
+    private final long delay;
+    private final long minSpacing;
+    private final long maxStaleness;
+
+    // All guarded by this. Times are clock readings
+    private boolean pending = false;
+    private long pendingSince;
+    private boolean running = false;
+    private boolean failed = false;
+    private boolean stopped = true;
+    private long lastRun;
+    private int generation = 0;
+    private ScheduledFuture<?> scheduled;
+    private int runs = 0;
+
+    public SyncScheduler(SaveState state, Runnable sync, ScheduledExecutorService executor) {
+        this(state, sync, executor, DEFAULT_DELAY_MS, DEFAULT_MIN_SPACING_MS, DEFAULT_MAX_STALENESS_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public SyncScheduler(SaveState state, Runnable sync, ScheduledExecutorService executor, long delay,
+            long minSpacing, long maxStaleness, TimeUnit unit) {
+        this(state, sync, executor, System::nanoTime, delay, minSpacing, maxStaleness, unit);
+    }
+
+    SyncScheduler(SaveState state, Runnable sync, ScheduledExecutorService executor, LongSupplier clock, long delay,
+            long minSpacing, long maxStaleness, TimeUnit unit) {
+        this.state = state;
+        this.sync = sync;
+        this.executor = executor;
+        this.clock = clock;
+        this.delay = unit.toNanos(delay);
+        this.minSpacing = unit.toNanos(minSpacing);
+        this.maxStaleness = unit.toNanos(maxStaleness);
+        this.lastRun = clock.getAsLong() - this.minSpacing;
+    }
+
+    // Listens for new versions and syncs the current one right away
+    public synchronized void start() {
+        stopped = false;
+        state.addUpdateListener(this);
+        pending = true;
+        pendingSince = clock.getAsLong() - maxStaleness;
+        schedule();
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        state.removeUpdateListener(this);
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    // Update listener of the save state
+    @Override
+    public synchronized void accept(long version) {
+        if (stopped) {
+            return;
+        }
+        if (!pending) {
+            pending = true;
+            pendingSince = clock.getAsLong();
+        }
+        if (!running) {
+            schedule();
+        }
+    }
+
+    public synchronized int getRuns() {
+        return runs;
+    }
+
+    private void schedule() {
+        long now = clock.getAsLong();
+        long at = Math.min(now + delay, pendingSince + maxStaleness);
+        at = Math.max(at, lastRun + (failed ? Math.max(minSpacing, maxStaleness) : minSpacing));
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        int gen = ++generation;
+        try {
+            scheduled = executor.schedule(() -> run(gen), Math.max(0, at - now), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Executor shut down, don't let that fail the save state update
+            stop();
+        }
+    }
+
+    private void run(int gen) {
+        synchronized (this) {
+            if (gen != generation || !pending || stopped) {
+                return;
+            }
+            pending = false;
+            running = true;
+            lastRun = clock.getAsLong();
+            runs++;
+        }
+        boolean ok = false;
+        try {
+            sync.run();
+            ok = true;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                running = false;
+                failed = !ok;
+                if (failed && !pending) {
+                    pending = true;
+                    pendingSince = clock.getAsLong();
+                }
+                if (pending && !stopped) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Computes the cell ranges that turn one table into another. Cells missing
+ * from the new table but present in the old one are blanked.
+ *
+ * Every changed row contributes the span from its first to its last changed
+ * cell. Adjacent changed rows are written as one block spanning all of their
+ * columns: rewriting a few unchanged cells is cheaper than another range, and
+ * appended rows (the campaign log) become a single range.
+ */
+public final class TableDiff {
+
+    private static final Object BLANK = "";
+
+    private TableDiff() {
+    }
+
+    public static List<CellRange> diff(String sheet, List<List<Object>> before, List<List<Object>> after) {
+        if (before == null) {
+            before = Collections.emptyList();
+        }
+        List<CellRange> ranges = new ArrayList<>();
+        int rows = Math.max(before.size(), after.size());
+        int blockStart = -1, blockLo = 0, blockHi = 0;
+        for (int r = 0; r <= rows; r++) {
+            int lo = -1, hi = -1;
+            if (r < rows) {
+                List<Object> a = r < before.size() ? before.get(r) : Collections.emptyList();
+                List<Object> b = r < after.size() ? after.get(r) : Collections.emptyList();
+                int cols = Math.max(a.size(), b.size());
+                for (int c = 0; c < cols; c++) {
+                    if (!Objects.equals(cell(a, c), cell(b, c))) {
+                        if (lo < 0) {
+                            lo = c;
+                        }
+                        hi = c;
+                    }
+                }
+            }
+            if (lo >= 0) {
+                if (blockStart < 0) {
+                    blockStart = r;
+                    blockLo = lo;
+                    blockHi = hi;
+                } else {
+                    blockLo = Math.min(blockLo, lo);
+                    blockHi = Math.max(blockHi, hi);
+                }
+            } else if (blockStart >= 0) {
+                ranges.add(block(sheet, after, blockStart, r, blockLo, blockHi));
+                blockStart = -1;
+            }
+        }
+        return ranges;
+    }
+
+    private static CellRange block(String sheet, List<List<Object>> table, int fromRow, int toRow, int lo, int hi) {
+        List<List<Object>> values = new ArrayList<>(toRow - fromRow);
+        for (int r = fromRow; r < toRow; r++) {
+            List<Object> row = r < table.size() ? table.get(r) : Collections.emptyList();
+            List<Object> cells = new ArrayList<>(hi - lo + 1);
+            for (int c = lo; c <= hi; c++) {
+                cells.add(cell(row, c));
+            }
+            values.add(cells);
+        }
+        return new CellRange(sheet, fromRow, lo, values);
+    }
+
+    private static Object cell(List<Object> row, int col) {
+        Object o = col < row.size() ? row.get(col) : null;
+        return o != null ? o : BLANK;
+    }
+}
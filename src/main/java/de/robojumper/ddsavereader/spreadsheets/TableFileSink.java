@@ -0,0 +1,247 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.robojumper.ddsavereader.BuildConfig;
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.model.CampaignLog;
+import de.robojumper.ddsavereader.model.CampaignLog.BaseRTTI;
+import de.robojumper.ddsavereader.model.CampaignLog.Chapter;
+import de.robojumper.ddsavereader.model.SaveState;
+import de.robojumper.ddsavereader.watcher.DarkestSaveFileWatcher;
+
+/**
+ * Writes the {@link SheetTables} to local CSV or TSV files, for overlays and
+ * other programs that read files.
+ *
+ * Tables are written to a temporary file that is then moved over the old one,
+ * so readers never see a half-written table. Tables that didn't change since
+ * the last write aren't written at all.
+ * The log has one row per event, with the week in every row, and only new
+ * events are appended to it. If events were changed or removed (e.g. a
+ * different profile was loaded), it is rewritten.
+ */
+public class TableFileSink {
+
+    public enum Format {
+        CSV(",", "csv"),
+        TSV("\t", "tsv");
+
+        final String separator;
+        final String extension;
+
+        Format(String separator, String extension) {
+            this.separator = separator;
+            this.extension = extension;
+        }
+
+        String escape(Object cell) {
+            String s = cell == null ? "" : cell.toString();
+            if (this == TSV) {
+                return s.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+            }
+            if (s.contains(separator) || s.contains("\"") || s.contains("\n") || s.contains("\r")) {
+                return "\"" + s.replace("\"", "\"\"") + "\"";
+            }
+            return s;
+        }
+    }
+
+    private static final List<Object> LOG_HEADER = Arrays.asList("Week", "Type");
+
+    private final Path dir;
+    private final Format format;
+
+    // Tables as last written, by name
+    private final Map<String, List<List<Object>>> written = new HashMap<>();
+    // Save state version and number of events the log file is up to date with
+    private long logVersion = -1;
+    private int loggedEvents = 0;
+
+    private int filesWritten = 0;
+
+    public TableFileSink(Path dir, Format format) {
+        this.dir = dir;
+        this.format = format;
+    }
+
+    public Path getFile(String table) {
+        return dir.resolve(table.toLowerCase() + "." + format.extension);
+    }
+
+    // Number of files written or appended to so far
+    public int getFilesWritten() {
+        return filesWritten;
+    }
+
+    public void write(SaveState.Snapshot snapshot) throws IOException {
+        Files.createDirectories(dir);
+
+        Map<String, List<List<Object>>> tables = new LinkedHashMap<>();
+        tables.put(SheetTables.ROSTER, SheetTables.makeRosterTable(snapshot));
+        tables.put(SheetTables.ESTATE, SheetTables.makeEstateTable(snapshot));
+        tables.put(SheetTables.PARTY, SheetTables.makePartyTable(snapshot));
+        for (Map.Entry<String, List<List<Object>>> e : tables.entrySet()) {
+            if (!e.getValue().equals(written.get(e.getKey()))) {
+                // Forget the table first, so it is rewritten if this fails
+                written.remove(e.getKey());
+                replace(getFile(e.getKey()), e.getValue());
+                written.put(e.getKey(), e.getValue());
+            }
+        }
+
+        writeLog(snapshot.getCampaignLog(), snapshot.version);
+    }
+
+    private void writeLog(CampaignLog log, long version) throws IOException {
+        List<Chapter> chapters = log.getChapters();
+        int events = chapters.stream().mapToInt(c -> c.events.size()).sum();
+
+        // Same selection as CampaignLog.getEventsSince, but with the weeks
+        List<List<Object>> rows = new ArrayList<>();
+        if (logVersion >= 0) {
+            for (Chapter c : chapters) {
+                for (BaseRTTI e : c.events) {
+                    if (e.getVersion() > logVersion) {
+                        rows.add(logRow(c, e));
+                    }
+                }
+            }
+        }
+
+        Path file = getFile(SheetTables.LOG);
+        if (logVersion >= 0 && loggedEvents + rows.size() == events) {
+            // Only additions
+            if (!rows.isEmpty()) {
+                logVersion = -1;
+                Files.write(file, toBytes(rows), StandardOpenOption.APPEND);
+                filesWritten++;
+            }
+        } else {
+            rows.clear();
+            rows.add(LOG_HEADER);
+            for (Chapter c : chapters) {
+                for (BaseRTTI e : c.events) {
+                    rows.add(logRow(c, e));
+                }
+            }
+            logVersion = -1;
+            replace(file, rows);
+        }
+        logVersion = version;
+        loggedEvents = events;
+    }
+
+    private static List<Object> logRow(Chapter c, BaseRTTI e) {
+        List<Object> row = new ArrayList<>();
+        row.add(c.chapterIndex);
+        row.addAll(e.getCells());
+        return row;
+    }
+
+    private void replace(Path file, List<List<Object>> rows) throws IOException {
+        // Not createTempFile, that one is only readable by us
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(tmp, toBytes(rows));
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        filesWritten++;
+    }
+
+    private byte[] toBytes(List<List<Object>> rows) {
+        StringBuilder sb = new StringBuilder();
+        for (List<Object> row : rows) {
+            for (int i = 0; i < row.size(); i++) {
+                if (i > 0) {
+                    sb.append(format.separator);
+                }
+                sb.append(format.escape(row.get(i)));
+            }
+            sb.append("\r\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String... args) {
+        String arg;
+        int i = 0;
+        Format format = Format.CSV;
+
+        while (i < args.length && args[i].startsWith("-")) {
+            arg = args[i++];
+
+            if (arg.equals("--tsv")) {
+                format = Format.TSV;
+            }
+        }
+
+        if (i != args.length - 2) {
+            System.err.println(
+                    "Usage: java -jar " + BuildConfig.JAR_NAME + ".jar tables [--tsv] outputDir saveDir");
+            System.exit(1);
+        }
+        Path outDir = Paths.get(args[i++]);
+        String saveDir = args[i++];
+
+        SaveState state = new SaveState();
+        TableFileSink sink = new TableFileSink(outDir, format);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+        try {
+            DarkestSaveFileWatcher watcher = new DarkestSaveFileWatcher(null, saveDir);
+            watcher.setBatchListener(files -> {
+                Map<String, DsonFile> data = new LinkedHashMap<>();
+                files.forEach((name, result) -> {
+                    if (!result.encounteredError) {
+                        data.put(name, result.file);
+                    }
+                });
+                state.updateFiles(data);
+            });
+            watcher.watchSaveFiles();
+
+            // Writing files is cheap, so don't wait long
+            SyncScheduler sync = new SyncScheduler(state, () -> {
+                try {
+                    sink.write(state.snapshot());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, scheduler, 50, 0, 1000, TimeUnit.MILLISECONDS);
+            sync.start();
+            System.out.println("Writing tables to " + outDir.toAbsolutePath());
+
+            while (watcher.isRunning()) {
+                Thread.sleep(1000);
+            }
+            sync.stop();
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
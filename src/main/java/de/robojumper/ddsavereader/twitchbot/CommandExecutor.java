@@ -0,0 +1,177 @@
+package de.robojumper.ddsavereader.twitchbot;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import de.robojumper.ddsavereader.model.SaveState;
+
+/**
+ * Runs chat commands on a fixed pool of threads. Every command works on the
+ * current {@link SaveState.Snapshot}, so commands neither wait for each other
+ * nor for the watcher.
+ * Users and channels are rate limited with token buckets, and both the shared
+ * queue and the number of commands one channel may have waiting are bounded,
+ * so a flood in one channel can't starve the others or grow memory.
+ * Commands that don't make it are dropped, chat is not worth queueing for.
+ */
+public class CommandExecutor implements AutoCloseable {
+
+    public enum Result {
+        QUEUED,
+        // Not a command
+        IGNORED,
+        USER_LIMITED,
+        CHANNEL_LIMITED,
+        // Queue full
+        REJECTED,
+    }
+
+    public static class Limits {
+        public int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        public int queueSize = 1024;
+        public int maxPendingPerChannel = 256;
+        // Commands per second and burst size
+        public double userRate = 0.5;
+        public double userBurst = 3;
+        public double channelRate = 50;
+        public double channelBurst = 100;
+    }
+
+    private static class Channel {
+        final TokenBucket bucket;
+        final AtomicInteger pending = new AtomicInteger();
+
+        Channel(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    // Idle buckets are swept once there are this many
+    private static final int MIN_SWEEP_SIZE = 4096;
+
+    private final SaveState state;
+    private final Limits limits;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, TokenBucket> users = new ConcurrentHashMap<>();
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger sweepAt = new AtomicInteger(MIN_SWEEP_SIZE);
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong limited = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public CommandExecutor(SaveState state) {
+        this(state, new Limits());
+    }
+
+    public CommandExecutor(SaveState state, Limits limits) {
+        this.state = state;
+        this.limits = limits;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(limits.threads, limits.threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(limits.queueSize), r -> {
+                    Thread t = new Thread(r, "Chat commands " + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Queues a chat message. If it is a command that produces a response,
+     * reply is called with it on one of the pool's threads.
+     */
+    public Result submit(String channel, String user, String content, Consumer<String> reply) {
+        content = content.trim();
+        if (!content.startsWith("!dd")) {
+            return Result.IGNORED;
+        }
+        long now = System.nanoTime();
+        // Limits that don't depend on the user first, so that a command that
+        // doesn't run doesn't use up the user's burst
+        Channel c = channels.computeIfAbsent(channel,
+                ch -> new Channel(new TokenBucket(limits.channelRate, limits.channelBurst, now)));
+        if (c.pending.incrementAndGet() > limits.maxPendingPerChannel) {
+            c.pending.decrementAndGet();
+            rejected.incrementAndGet();
+            return Result.REJECTED;
+        }
+        if (!c.bucket.tryAcquire(now)) {
+            c.pending.decrementAndGet();
+            limited.incrementAndGet();
+            return Result.CHANNEL_LIMITED;
+        }
+        TokenBucket u = users.computeIfAbsent(user, k -> new TokenBucket(limits.userRate, limits.userBurst, now));
+        if (!u.tryAcquire(now)) {
+            c.bucket.refund();
+            c.pending.decrementAndGet();
+            limited.incrementAndGet();
+            return Result.USER_LIMITED;
+        }
+        String message = content;
+        try {
+            pool.execute(() -> {
+                try {
+                    String response = Commands.buildResponse(state, message);
+                    executed.incrementAndGet();
+                    if (response != null && response.length() > 0) {
+                        reply.accept(response);
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    c.pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            u.refund();
+            c.bucket.refund();
+            c.pending.decrementAndGet();
+            rejected.incrementAndGet();
+            return Result.REJECTED;
+        }
+        sweep(now);
+        return Result.QUEUED;
+    }
+
+    // Forget users that have been quiet long enough for their bucket to refill
+    private void sweep(long now) {
+        int at = sweepAt.get();
+        if (users.size() >= at && sweepAt.compareAndSet(at, Integer.MAX_VALUE)) {
+            users.values().removeIf(b -> b.isFull(now));
+            sweepAt.set(Math.max(MIN_SWEEP_SIZE, users.size() * 2));
+        }
+    }
+
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    public long getLimited() {
+        return limited.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    // Lets queued commands finish for a while, then drops the rest
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
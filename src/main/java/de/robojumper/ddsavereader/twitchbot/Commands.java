@@ -1,7 +1,12 @@
 package de.robojumper.ddsavereader.twitchbot;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,7 +17,7 @@ import de.robojumper.ddsavereader.model.Hero.HeroStatus;
 public class Commands {
     
     interface Command {
-        public String buildResponse(SaveState s, String command, String params);
+        public String buildResponse(SaveState.Snapshot s, String command, String params);
     }
     
     public static final Pattern COMMAND_PATTERN = Pattern.compile("!dd([a-zA-Z0-9]+)\\s*(.*)");
@@ -20,7 +25,7 @@ public class Commands {
     
     static {
         COMMANDS.put("status", (state, command, params) -> { 
-            Integer heroID = state.getRoster().getHeroID(params);
+            Integer heroID = state.getRoster().findHeroID(params);
             Hero h = state.getRoster().getHero(heroID);
             if (h != null) {
                 StringBuilder response = new StringBuilder();
@@ -41,7 +46,7 @@ public class Commands {
         });
         
         COMMANDS.put("kills", (state, command, params) -> { 
-            Integer heroID = state.getRoster().getHeroID(params);
+            Integer heroID = state.getRoster().findHeroID(params);
             Hero h = state.getRoster().getHero(heroID);
             if (h != null) {
                 int kills = h.getKills();
@@ -55,7 +60,7 @@ public class Commands {
         });
         
         COMMANDS.put("quirks", (state, command, params) -> { 
-            Hero h = state.getRoster().getHero(params);
+            Hero h = state.getRoster().findHero(params);
             if (h != null) {
                 return h.getName() + ": " + h.getQuirks();
             }
@@ -92,22 +97,77 @@ public class Commands {
         
     }
 
+    // Responses of one snapshot, by command and parameters. Chat sends the same
+    // few commands over and over, the save changes every few seconds at most.
+    // The least recently used responses are dropped when chat spams different
+    // parameters.
+    static final class ResponseCache {
+        final SaveState.Snapshot snapshot;
+        final Map<String, Optional<String>> responses = Collections
+                .synchronizedMap(new LinkedHashMap<String, Optional<String>>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Optional<String>> eldest) {
+                        return size() > MAX_CACHED_RESPONSES;
+                    }
+                });
+
+        ResponseCache(SaveState.Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    static final int MAX_CACHED_RESPONSES = 1024;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // The cache of the newest snapshot of every save state
+    private static final Map<SaveState, AtomicReference<ResponseCache>> CACHES = Collections
+            .synchronizedMap(new WeakHashMap<>());
+
     public static String buildResponse(SaveState s, String content) {
         if (content.length() > 1) {
             Matcher m = COMMAND_PATTERN.matcher(content); 
             if (m.matches()) {
                 String command = m.group(1).toLowerCase();
-                String params = m.group(2).toLowerCase();
+                String params = WHITESPACE.matcher(m.group(2).trim()).replaceAll(" ").toLowerCase();
 
                 Command c = COMMANDS.get(command);
                 if (c != null) {
-                    synchronized (s) {
-                        return c.buildResponse(s, command, params);
+                    // All files of one version, without blocking the watcher
+                    SaveState.Snapshot snapshot = s.snapshot();
+                    ResponseCache cache = cacheFor(s, snapshot);
+                    String key = command + " " + params;
+                    Optional<String> response = cache.responses.get(key);
+                    if (response == null) {
+                        response = Optional.ofNullable(c.buildResponse(snapshot, command, params));
+                        cache.responses.putIfAbsent(key, response);
                     }
+                    return response.orElse(null);
                 }
 
             }
         }
         return null;
     }
+
+    // Snapshots are immutable and replaced on every update, so a snapshot
+    // identifies the version of its save state. Only a newer snapshot replaces
+    // the shared cache; a thread that still has an older one gets a cache of
+    // its own so that it can't push out the newer one.
+    static ResponseCache cacheFor(SaveState s, SaveState.Snapshot snapshot) {
+        AtomicReference<ResponseCache> ref = CACHES.computeIfAbsent(s, k -> new AtomicReference<>());
+        while (true) {
+            ResponseCache cache = ref.get();
+            if (cache != null && cache.snapshot == snapshot) {
+                return cache;
+            }
+            ResponseCache fresh = new ResponseCache(snapshot);
+            if (cache != null && cache.snapshot.version >= snapshot.version) {
+                return fresh;
+            }
+            if (ref.compareAndSet(cache, fresh)) {
+                return fresh;
+            }
+        }
+    }
 }
@@ -16,6 +16,7 @@ public class DDSampleTwitchBot {
         @SuppressWarnings("unused")
         DarkestSaveFileWatcher watcher;
         SaveState saveState = new SaveState();
+        CommandExecutor executor = new CommandExecutor(saveState);
         try {
             // Load Name File!!!
             watcher = new DarkestSaveFileWatcher(saveState, System.getenv("DDSAVEDIR"));
@@ -30,12 +31,9 @@ public class DDSampleTwitchBot {
                 public void handle(Event event) {
                     if (event instanceof ChannelMessageEvent) {
                         ChannelMessageEvent message = (ChannelMessageEvent)event;
-                        String content = message.getMessage().trim();
-                        String response = Commands.buildResponse(saveState, content);
-                        
-                        if (response != null && response.length() > 0) {
-                            event.getClient().getMessageInterface().sendMessage(message.getChannel().getName(), response);
-                        }
+                        String channel = message.getChannel().getName();
+                        executor.submit(channel, message.getUser().getName(), message.getMessage(),
+                                response -> event.getClient().getMessageInterface().sendMessage(channel, response));
                     }
                 }
             });
@@ -0,0 +1,48 @@
+package de.robojumper.ddsavereader.twitchbot;
+
+/**
+ * Rate limit that allows bursts of up to capacity, refilled at rate tokens per
+ * second. Times are System.nanoTime() values, passed in so that several
+ * buckets can share one clock reading.
+ */
+class TokenBucket {
+
+    private final double capacity;
+    private final double perNano;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double rate, double capacity, long now) {
+        this.capacity = capacity;
+        this.perNano = rate / 1e9;
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    synchronized boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    // Gives back a token that was acquired for something that didn't happen
+    synchronized void refund() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    // Full buckets limit nothing and can be dropped
+    synchronized boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * perNano);
+            lastRefill = now;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import javafx.scene.control.ProgressIndicator;
 import de.robojumper.ddsavereader.BuildConfig;
 import de.robojumper.ddsavereader.i18n.Messages;
 import de.robojumper.ddsavereader.spreadsheets.SpreadsheetsService;
+import de.robojumper.ddsavereader.spreadsheets.SyncScheduler;
 import de.robojumper.ddsavereader.ui.javafx.StateManager;
 
 import java.awt.Desktop;
@@ -18,7 +19,6 @@ import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
@@ -127,7 +127,7 @@ public class SpreadsheetsUtil {
                     Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
                     successAlert.setTitle("Success");
                     successAlert.setHeaderText("Google Sheets sync started");
-                    successAlert.setContentText("The spreadsheet will be updated automatically every 2 minutes.\\n" +
+                    successAlert.setContentText("The spreadsheet will be updated automatically whenever the game saves.\\n" +
                         "You can continue using the application normally.");
                     successAlert.showAndWait();
                 });
@@ -167,16 +167,13 @@ public class SpreadsheetsUtil {
     private static void startPeriodicSync(SpreadsheetsService.SheetUpdater updater, StateManager state) {
         final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
         
-        // 每2分钟同步一次
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                if (updater.isRunning()) {
-                    updater.run();
-                }
-            } catch (Exception e) {
-                System.err.println("Error during periodic sync: " + e.getMessage());
+        // 游戏存档时同步（合并连续的存档，最多每秒一次）
+        SyncScheduler sync = new SyncScheduler(updater.getSaveState(), () -> {
+            if (updater.isRunning()) {
+                updater.run();
             }
-        }, 0, 2, TimeUnit.MINUTES);
+        }, scheduler);
+        sync.start();
         
         // 将调度器保存到State中，以便应用程序关闭时可以停止它
         state.setSpreadsheetScheduler(scheduler);
@@ -3,7 +3,17 @@ package de.robojumper.ddsavereader.util;
 import de.robojumper.ddsavereader.BuildConfig;
 import java.io.File;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Helpers {
 
@@ -13,6 +23,59 @@ public class Helpers {
         return fileName.matches(".*persist\\..*\\.json") || fileName.matches("novelty_tracker\\.json");
     }
 
+    /**
+     * Collects save files from a list of files and directories. Directories are
+     * walked recursively and only files with save file names are picked up,
+     * files that are given directly are always included.
+     */
+    public static List<Path> collectSaveFiles(Collection<String> roots) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String root : roots) {
+            Path p = Paths.get(root);
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> paths = Files.walk(p)) {
+                    files.addAll(paths.filter(f -> Files.isRegularFile(f) && isSaveFileName(f.getFileName().toString()))
+                            .sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(p);
+            }
+        }
+        return files;
+    }
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final long P1 = 0x9E3779B97F4A7C15L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * Fast non-cryptographic 64 bit hash of a byte range, used to recognize
+     * files and parts of files that haven't changed. Reads 8 bytes at a time.
+     */
+    public static long hash64(byte[] data, int off, int len) {
+        long h = P1 ^ len;
+        int end = off + len;
+        int i = off;
+        for (; i + 8 <= end; i += 8) {
+            h = Long.rotateLeft(h ^ ((long) LONGS.get(data, i) * P2), 31) * P1;
+        }
+        for (; i < end; i++) {
+            h = Long.rotateLeft(h ^ ((data[i] & 0xFF) * P2), 11) * P1;
+        }
+        // Final mix so that all input bits affect all output bits
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public static long hash64(byte[] data) {
+        return hash64(data, 0, data.length);
+    }
+
     public static void hideDataDir() {
         try {
             Files.setAttribute(Helpers.DATA_DIR.toPath(), "dos:hidden", true);
@@ -0,0 +1,147 @@
+package de.robojumper.ddsavereader.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Names found in game files by {@link ReadNames}, by file, so that a rescan
+ * only parses files that were added or changed since the last one. A file is
+ * considered unchanged if its size and modification time are.
+ *
+ * Only files looked up or added since loading are saved again, so files
+ * that were deleted (or not scanned this time) drop out of the cache.
+ * The cache is thread-safe.
+ */
+public class NameCache {
+
+    public static final File DEFAULT_FILE = new File(Helpers.DATA_DIR, "names.cache");
+
+    private static final int MAGIC = 0x444E4D43;
+    // Bump when the file format or the parsers' output changes
+    private static final int VERSION = 1;
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final List<String> names;
+
+        Entry(long size, long modified, List<String> names) {
+            this.size = size;
+            this.modified = modified;
+            this.names = names;
+        }
+    }
+
+    // Parsers the cached names came from, see ReadNames
+    private final String parsers;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+    public NameCache(String parsers) {
+        this.parsers = parsers;
+    }
+
+    /**
+     * Loads a cache. If the file doesn't exist, can't be read or is for other
+     * parsers, the cache is empty.
+     */
+    public static NameCache load(Path file, String parsers) {
+        NameCache cache = new NameCache(parsers);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(parsers)) {
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                String[] names = new String[in.readInt()];
+                for (int n = 0; n < names.length; n++) {
+                    names[n] = in.readUTF();
+                }
+                cache.entries.put(path, new Entry(size, modified, Arrays.asList(names)));
+            }
+        } catch (NoSuchFileException e) {
+            // First run
+        } catch (IOException e) {
+            System.err.println("Ignoring name cache " + file + ": " + e.getMessage());
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * @return The names of the file if it didn't change since they were put,
+     *         otherwise null.
+     */
+    public List<String> get(Path file, BasicFileAttributes attrs) {
+        String key = file.toAbsolutePath().toString();
+        Entry e = entries.get(key);
+        if (e != null && e.size == attrs.size() && e.modified == attrs.lastModifiedTime().toMillis()) {
+            used.add(key);
+            return e.names;
+        }
+        return null;
+    }
+
+    public void put(Path file, BasicFileAttributes attrs, Collection<String> names) {
+        String key = file.toAbsolutePath().toString();
+        entries.put(key, new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(),
+                Arrays.asList(names.toArray(new String[0]))));
+        used.add(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Writes the used entries to a temporary file and moves it over file
+    public void save(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(parsers);
+                List<String> keys = Arrays.asList(used.toArray(new String[0]));
+                out.writeInt(keys.size());
+                for (String key : keys) {
+                    Entry e = entries.get(key);
+                    out.writeUTF(key);
+                    out.writeLong(e.size);
+                    out.writeLong(e.modified);
+                    out.writeInt(e.names.size());
+                    for (String name : e.names) {
+                        out.writeUTF(name);
+                    }
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -18,6 +18,14 @@ import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -31,6 +39,8 @@ public class ReadNames {
 
 	static final Set<String> HARDCODED_NAMES = new HashSet<>();
 	static final Map<String, List<Parser>> PARSERS = new HashMap<>();
+	// PARSERS by file name suffix, built once they are all put
+	static final SuffixTrie<Entry<String, List<Parser>>> DISPATCH;
 	
 	static {
 		// Info files (Heroes, Monsters)
@@ -236,6 +246,12 @@ public class ReadNames {
 		HARDCODED_NAMES.add("HALLWAY_STEP_COMPLETED");
 		HARDCODED_NAMES.add("MONSTER_DEFEATED");
 		HARDCODED_NAMES.add("UNDEFINED");
+
+		Map<String, Entry<String, List<Parser>>> dispatch = new HashMap<>();
+		for (Entry<String, List<Parser>> entry : PARSERS.entrySet()) {
+			dispatch.put(entry.getKey(), entry);
+		}
+		DISPATCH = new SuffixTrie<>(dispatch);
 	}
 	
 	static void putParser(String extension, Parser Parser) {
@@ -248,47 +264,184 @@ public class ReadNames {
 		}
 	}
 	
+	// Called from the parsing threads after every parsed file
+	public interface ProgressListener {
+		void progress(int parsed, int found);
+	}
+	
+	// Files parsed and time spent, per file name suffix in PARSERS
+	public static class ParserTiming {
+		public final LongAdder files = new LongAdder();
+		public final LongAdder nanos = new LongAdder();
+	}
+	
 	// args is a list of game or mod root directories
 	public static Set<String> collectNames(Collection<String> paths) {
-		final Set<String> names = new HashSet<String>();
-		for (String path : paths) {
-			File rootDir = new File(path);
-			if (rootDir.isDirectory()) {
-				try {
-					Files.walkFileTree(rootDir.toPath(), new SimpleFileVisitor<Path>() {
-						@Override
-						public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-							String filename = file.toString();
-							// for all parsers that want to handle this file
-							for (Entry<String, List<Parser>> entry : PARSERS.entrySet()) {
-								if (filename.endsWith(entry.getKey())) {
-									try {
-										for (Parser parser : entry.getValue()) {
-											parser.parseFile(file, names);
-										}
-									} catch (Exception e) {
-										System.err.println("Error opening/parsing " + filename.toString());
-										e.printStackTrace();
-									}
+		return collectNames(paths, Runtime.getRuntime().availableProcessors(), null, null, null);
+	}
+	
+	// Walks the directories on the calling thread and parses the files on a pool
+	// of the given size. When the pool's queue is full, the walking thread parses
+	// files itself, so a fast walk doesn't queue up an entire game install.
+	// Files that are in the cache and didn't change aren't parsed again.
+	// progress, timings and cache may be null.
+	public static Set<String> collectNames(Collection<String> paths, int threads, ProgressListener progress,
+			Map<String, ParserTiming> timings, NameCache cache) {
+		final Set<String> names = ConcurrentHashMap.newKeySet();
+		final AtomicInteger found = new AtomicInteger();
+		final AtomicInteger parsed = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads * 64), new ThreadPoolExecutor.CallerRunsPolicy());
+		try {
+			for (String path : paths) {
+				File rootDir = new File(path);
+				if (rootDir.isDirectory()) {
+					try {
+						Files.walkFileTree(rootDir.toPath(), new SimpleFileVisitor<Path>() {
+							@Override
+							public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+								// all parsers that want to handle this file
+								List<Entry<String, List<Parser>>> parsers = getParsers(file);
+								if (parsers.isEmpty()) {
+									return FileVisitResult.CONTINUE;
+								}
+								found.incrementAndGet();
+								List<String> cached = cache != null ? cache.get(file, attrs) : null;
+								if (cached != null) {
+									names.addAll(cached);
+									reportProgress(progress, parsed.incrementAndGet(), found.get());
+								} else {
+									pool.execute(() -> {
+										parse(file, attrs, parsers, names, timings, cache);
+										reportProgress(progress, parsed.incrementAndGet(), found.get());
+									});
 								}
+								return FileVisitResult.CONTINUE;
 							}
-							return FileVisitResult.CONTINUE;
-						}
-					});
-				} catch (IOException e) {
-					System.err.println("Error scanning " + rootDir.toString());
-					e.printStackTrace();
+						});
+					} catch (IOException e) {
+						System.err.println("Error scanning " + rootDir.toString());
+						e.printStackTrace();
+					}
 				}
 			}
+		} finally {
+			pool.shutdown();
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				pool.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
 		}
 		return names;
 	}
 	
+	private static void reportProgress(ProgressListener progress, int parsed, int found) {
+		if (progress != null) {
+			progress.progress(parsed, found);
+		}
+	}
+	
+	// Files that failed to parse aren't cached, so they are tried again next time
+	private static void parse(Path file, BasicFileAttributes attrs, List<Entry<String, List<Parser>>> parsers,
+			Set<String> names, Map<String, ParserTiming> timings, NameCache cache) {
+		Set<String> fileNames = new HashSet<>();
+		boolean ok = true;
+		for (Entry<String, List<Parser>> entry : parsers) {
+			long start = System.nanoTime();
+			try {
+				for (Parser parser : entry.getValue()) {
+					parser.parseFile(file, fileNames);
+				}
+			} catch (Exception e) {
+				System.err.println("Error opening/parsing " + file.toString());
+				e.printStackTrace();
+				ok = false;
+			}
+			if (timings != null) {
+				ParserTiming t = timings.computeIfAbsent(entry.getKey(), k -> new ParserTiming());
+				t.files.increment();
+				t.nanos.add(System.nanoTime() - start);
+			}
+		}
+		names.addAll(fileNames);
+		if (ok && cache != null) {
+			cache.put(file, attrs, fileNames);
+		}
+	}
+	
+	static List<Entry<String, List<Parser>>> getParsers(Path file) {
+		return DISPATCH.match(file.toString());
+	}
+	
+	// Identifies the parsers for the NameCache
+	static String getParserSignature() {
+		return String.join(",", new TreeSet<>(PARSERS.keySet()));
+	}
+	
 	public static void main(String[] args) {
-		Set<String> names = collectNames(Arrays.asList(args));
+		String arg;
+		int i = 0;
+		boolean verbose = false;
+		boolean useCache = true;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		while (i < args.length && args[i].startsWith("-")) {
+			arg = args[i++];
+
+			if (arg.equals("-v") || arg.equals("--verbose")) {
+				verbose = true;
+			}
+
+			if (arg.equals("--no-cache")) {
+				useCache = false;
+			}
+
+			if (arg.equals("-t") || arg.equals("--threads")) {
+				if (i < args.length) {
+					threads = Math.max(1, Integer.parseInt(args[i++]));
+				} else {
+					System.err.println("--threads requires a number");
+				}
+			}
+		}
+
+		// Names go to stdout, everything else to stderr
+		long start = System.nanoTime();
+		Map<String, ParserTiming> timings = verbose ? new ConcurrentHashMap<>() : null;
+		ProgressListener progress = null;
+		if (verbose) {
+			AtomicLong lastReport = new AtomicLong(start);
+			progress = (parsed, found) -> {
+				long now = System.nanoTime();
+				long last = lastReport.get();
+				if (now - last > 1_000_000_000L && lastReport.compareAndSet(last, now)) {
+					System.err.println(String.format("%d/%d files parsed", parsed, found));
+				}
+			};
+		}
+		// Only changed files are parsed again, see NameCache
+		Path cacheFile = NameCache.DEFAULT_FILE.toPath();
+		NameCache cache = useCache ? NameCache.load(cacheFile, getParserSignature()) : null;
+		Set<String> names = collectNames(Arrays.asList(args).subList(i, args.length), threads, progress, timings,
+				cache);
+		if (cache != null) {
+			try {
+				cache.save(cacheFile);
+			} catch (IOException e) {
+				System.err.println("Could not save the name cache: " + e.getMessage());
+			}
+		}
 		for (String str : names) {
 			System.out.println(str);
 		}
+		if (verbose) {
+			System.err.println(String.format("%d names in %.1fs", names.size(), (System.nanoTime() - start) / 1e9));
+			timings.entrySet().stream().sorted((a, b) -> Long.compare(b.getValue().nanos.sum(), a.getValue().nanos.sum()))
+					.forEach(e -> System.err.println(String.format("%-36s %6d files %8.1f ms", e.getKey(),
+							e.getValue().files.sum(), e.getValue().nanos.sum() / 1e6)));
+		}
 	}
 	
 	interface Parser {
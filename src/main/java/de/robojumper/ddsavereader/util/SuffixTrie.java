@@ -0,0 +1,91 @@
+package de.robojumper.ddsavereader.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds all keys that are a suffix of a string in one backwards pass over the
+ * string, instead of one endsWith per key. Keys are stored reversed in a trie;
+ * every node that ends a key knows the values of that key and of all shorter
+ * keys on its path, so a lookup returns the list of its deepest such node
+ * without allocating.
+ */
+public class SuffixTrie<T> {
+
+    private static class Node<T> {
+        char[] chars = new char[0];
+        Node<T>[] children = newNodes(0);
+        // Values of all keys ending here or above, shortest key first
+        List<T> matches = Collections.emptyList();
+
+        Node<T> child(char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newNodes(int length) {
+        return (Node<T>[]) new Node<?>[length];
+    }
+
+    private final Node<T> root = new Node<>();
+
+    public SuffixTrie(Map<String, T> entries) {
+        for (Map.Entry<String, T> e : entries.entrySet()) {
+            Node<T> n = root;
+            String key = e.getKey();
+            for (int i = key.length() - 1; i >= 0; i--) {
+                char c = key.charAt(i);
+                Node<T> next = n.child(c);
+                if (next == null) {
+                    next = new Node<>();
+                    n.chars = Arrays.copyOf(n.chars, n.chars.length + 1);
+                    n.chars[n.chars.length - 1] = c;
+                    n.children = Arrays.copyOf(n.children, n.children.length + 1);
+                    n.children[n.children.length - 1] = next;
+                }
+                n = next;
+            }
+            List<T> own = new ArrayList<>(n.matches);
+            own.add(e.getValue());
+            n.matches = own;
+        }
+        propagate(root, Collections.emptyList());
+    }
+
+    // Adds the values of shorter keys to the nodes below them
+    private static <T> void propagate(Node<T> n, List<T> inherited) {
+        if (!n.matches.isEmpty() || !inherited.isEmpty()) {
+            List<T> all = new ArrayList<>(inherited);
+            all.addAll(n.matches);
+            n.matches = Collections.unmodifiableList(all);
+        }
+        for (Node<T> child : n.children) {
+            propagate(child, n.matches);
+        }
+    }
+
+    /**
+     * @return The values of all keys s ends with, shortest key first. Empty if
+     *         there are none.
+     */
+    public List<T> match(CharSequence s) {
+        Node<T> n = root;
+        List<T> matches = root.matches;
+        for (int i = s.length() - 1; i >= 0 && n != null; i--) {
+            n = n.child(s.charAt(i));
+            if (n != null && !n.matches.isEmpty()) {
+                matches = n.matches;
+            }
+        }
+        return matches;
+    }
+}
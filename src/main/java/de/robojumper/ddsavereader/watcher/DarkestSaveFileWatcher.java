@@ -1,41 +1,119 @@
 package de.robojumper.ddsavereader.watcher;
 
-import static java.nio.file.StandardWatchEventKinds.*;
-
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import de.robojumper.ddsavereader.file.DsonDiff;
 import de.robojumper.ddsavereader.file.DsonFile;
 import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
 import de.robojumper.ddsavereader.util.Helpers;
 
+/**
+ * Watches a save directory and all directories below it (e.g. all profiles of
+ * an installation). Every watcher has one thread waiting for changes from its
+ * {@link WatchBackend}, reading and parsing is done on a pool shared by all
+ * watchers. Reads of the same file happen in the order of the events.
+ */
 public class DarkestSaveFileWatcher implements Runnable {
-    
+
+    // The game writes a file several times when saving, wait until it has been
+    // quiet for this long before reading it
+    public static final long DEFAULT_QUIET_PERIOD_MS = 250;
+
+    // Quiet period timers of all watchers
+    private static final ScheduledExecutorService TIMER = Executors
+            .newSingleThreadScheduledExecutor(daemonThreads("Save file timer"));
+    // Reading and parsing of all watchers. The queue is bounded, once it is
+    // full (e.g. reading many profiles at start) the thread that hands in a
+    // read does it itself, which holds up new events and directory walks.
+    private static final ExecutorService READERS;
+    static {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        READERS = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 64),
+                daemonThreads("Save file reader"), new ThreadPoolExecutor.CallerRunsPolicy());
+        ((ThreadPoolExecutor) READERS).allowCoreThreadTimeOut(true);
+    }
+
     private BiConsumer<String, DsonParseResult> callback;
     private Path saveDir;
-    private WatchService watcher;
-    private WatchKey k;
+    private final WatchBackend backend;
+    private final long quietPeriodNanos;
+
+    // Files with pending events -> time of the most recent event
+    private final ConcurrentHashMap<Path, Long> lastEvents = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedEvents = new AtomicLong();
+    // Last read task of every file that is being read, later reads of the same
+    // file are chained to it
+    private final ConcurrentHashMap<Path, CompletableFuture<Void>> readTails = new ConcurrentHashMap<>();
+
+    // Size, modification time and content hash of the last version of every
+    // file that was read. Reads of the same file are never concurrent.
+    private final Map<Path, FileState> fileStates = new ConcurrentHashMap<>();
+    private final AtomicLong skippedParses = new AtomicLong();
+    private final AtomicLong overflowRescans = new AtomicLong();
+
+    private volatile BiConsumer<String, List<DsonDiff.Change>> changeListener;
+    // Last successfully parsed version of every file, only kept while there
+    // is a change listener
+    private final Map<Path, DsonFile> lastFiles = new ConcurrentHashMap<>();
+
+    private volatile Consumer<Map<String, DsonParseResult>> batchListener;
+    // Files that are waiting for their quiet period or being read. When this
+    // drops to 0, the game is done saving.
+    private final AtomicInteger filesInFlight = new AtomicInteger();
+    // Files parsed since filesInFlight was last 0
+    private Map<String, DsonParseResult> burst = new LinkedHashMap<>();
     
-    private volatile boolean wantsStop = false;
     private volatile boolean stopped = false;
 
     public DarkestSaveFileWatcher(BiConsumer<String, DsonParseResult> callback, String saveDir) throws IOException {
+        this(callback, saveDir, DEFAULT_QUIET_PERIOD_MS);
+    }
+
+    public DarkestSaveFileWatcher(BiConsumer<String, DsonParseResult> callback, String saveDir, long quietPeriodMillis)
+            throws IOException {
+        this(callback, saveDir, quietPeriodMillis, new NativeWatchBackend());
+    }
+
+    /**
+     * @param callback Receives every file as soon as it has been parsed, or
+     *                 null if only the listeners are used
+     * @param backend  Source of change notifications, e.g. a
+     *                 {@link PollingWatchBackend} for network drives
+     */
+    public DarkestSaveFileWatcher(BiConsumer<String, DsonParseResult> callback, String saveDir, long quietPeriodMillis,
+            WatchBackend backend) throws IOException {
         this.callback = callback;
         this.saveDir =  Paths.get(saveDir);
+        this.quietPeriodNanos = TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis);
+        this.backend = backend;
     }
 
     /**
@@ -50,26 +128,192 @@ public class DarkestSaveFileWatcher implements Runnable {
      */
     public void watchSaveFiles() throws IOException {
         try {
-            watcher = FileSystems.getDefault().newWatchService();
-            k = saveDir.register(watcher, ENTRY_MODIFY, ENTRY_CREATE);
-            new Thread(this).start();
+            backend.open(saveDir);
+            new Thread(this, "Save file watcher").start();
         } catch (IOException e) {
 
         }
     }
     
     public void stop() {
-        this.wantsStop = true;
+        backend.stop();
     }
     
     public boolean isRunning() {
         return !stopped;
     }
+
+    /**
+     * @return The number of events that didn't cause a parse because another
+     *         event for the same file followed within the quiet period
+     */
+    public long getCoalescedEvents() {
+        return coalescedEvents.get();
+    }
+
+    /**
+     * Sets a listener that receives the changed fields whenever a file changes,
+     * in addition to the regular callback. It is called after the callback
+     * with the differences to the previous version of the file, which means
+     * that it is not called for the first version of a file.
+     * 
+     * @param changeListener Listener, or null to remove it
+     */
+    public void setChangeListener(BiConsumer<String, List<DsonDiff.Change>> changeListener) {
+        this.changeListener = changeListener;
+        if (changeListener == null) {
+            lastFiles.clear();
+        }
+    }
+
+    /**
+     * Sets a listener that receives all files that were parsed during one save
+     * of the game at once, in addition to the regular callback. The game
+     * writes several files when saving; all files that change before the
+     * previous ones have been read are delivered together, after the last
+     * one has been parsed.
+     * 
+     * @param batchListener Listener receiving file name -> parse result, or
+     *                      null to remove it
+     */
+    public void setBatchListener(Consumer<Map<String, DsonParseResult>> batchListener) {
+        this.batchListener = batchListener;
+    }
+
+    /**
+     * @return The number of times events were lost and the save directory had
+     *         to be checked for changes
+     */
+    public long getOverflowRescans() {
+        return overflowRescans.get();
+    }
+
+    /**
+     * @return The number of times a file was read but not parsed because its
+     *         contents didn't change
+     */
+    public long getSkippedParses() {
+        return skippedParses.get();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // Reads all save files below a directory. They are all counted as in
+    // flight before the first read, so they end up in one batch.
+    private void readAll(Path root) {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(p -> Helpers.isSaveFileName(p.getFileName().toString()))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        filesInFlight.addAndGet(files.size());
+        files.forEach(this::read);
+    }
+
+    // Reads the file on the shared pool, after all earlier reads of it are
+    // done. The caller must have counted the file as in flight.
+    private void read(Path file) {
+        Runnable r = () -> {
+            try {
+                tryHandleFile(file);
+            } finally {
+                if (filesInFlight.decrementAndGet() == 0) {
+                    endBurst();
+                }
+            }
+        };
+        // Chained whatever the outcome, a failed read doesn't hold up later ones.
+        // Only handed to the pool once the gate opens outside of compute, as
+        // it may run on this thread when the pool is full.
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        CompletableFuture<Void> task = readTails.compute(file, (p, tail) -> (tail == null ? gate
+                : CompletableFuture.allOf(gate, tail.handle((v, e) -> null))).thenRunAsync(r, READERS));
+        task.whenComplete((v, e) -> readTails.remove(file, task));
+        gate.complete(null);
+    }
+
+    private void endBurst() {
+        Map<String, DsonParseResult> files;
+        synchronized (this) {
+            if (burst.isEmpty()) {
+                return;
+            }
+            files = burst;
+            burst = new LinkedHashMap<>();
+        }
+        Consumer<Map<String, DsonParseResult>> listener = batchListener;
+        if (listener != null) {
+            try {
+                listener.accept(files);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Finds the files that changed since they were last read, for when events
+    // were lost. Only their attributes are checked here, reading them again
+    // still skips the parse if only the modification time changed.
+    void rescan() {
+        try (Stream<Path> paths = Files.walk(saveDir)) {
+            paths.filter(p -> Helpers.isSaveFileName(p.getFileName().toString())).forEach(p -> {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                    FileState known = fileStates.get(p);
+                    if (known == null || known.size != attrs.size()
+                            || known.mtime != attrs.lastModifiedTime().toMillis()) {
+                        schedule(p);
+                    }
+                } catch (IOException e) {
+                    // Deleted in the meantime
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Reads the file once no more events arrived for it for the quiet period.
+    // Events for a file that is already waiting only move its deadline.
+    private void schedule(Path file) {
+        if (lastEvents.put(file, System.nanoTime()) != null) {
+            coalescedEvents.incrementAndGet();
+            return;
+        }
+        filesInFlight.incrementAndGet();
+        TIMER.schedule(() -> settle(file), quietPeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void settle(Path file) {
+        long last = lastEvents.get(file);
+        long wait = last + quietPeriodNanos - System.nanoTime();
+        // An event may arrive between get and remove, in that case wait again
+        if (wait > 0 || !lastEvents.remove(file, last)) {
+            TIMER.schedule(() -> settle(file), Math.max(wait, 0), TimeUnit.NANOSECONDS);
+            return;
+        }
+        read(file);
+    }
     
-    static void tryHandleFile(Path file, BiConsumer<String, DsonParseResult> callback, Path saveDir) {
+    private void tryHandleFile(Path file) {
         try {
-            if (Files.isRegularFile(file) && Helpers.isSaveFileName(file.getFileName().toString()) && file.getParent().equals(saveDir)) {
-                System.out.println("Reading " + file.getFileName().toString());
+            if (Files.isRegularFile(file) && Helpers.isSaveFileName(file.getFileName().toString())) {
+                // Files are identified by their path below the save directory,
+                // which is just the file name for files directly in it
+                String name = saveDir.relativize(file).toString().replace('\\', '/');
+                System.out.println("Reading " + name);
+                // Before reading, so that a write during the read makes the
+                // next rescan read it again
+                long mtime = Files.getLastModifiedTime(file).toMillis();
                 // Open file with read option only to allow for file deletion and
                 // modifications from other programs.
                 try (InputStream is = Files.newInputStream(file, StandardOpenOption.READ)) {
@@ -86,18 +330,42 @@ public class DarkestSaveFileWatcher implements Runnable {
                     buffer.flush();
                     stream.close();
                     byte[] byteArray = buffer.toByteArray();
+                    // The game sometimes touches files without changing them
+                    FileState state = new FileState(byteArray.length, mtime, Helpers.hash64(byteArray));
+                    FileState known = fileStates.put(file, state);
+                    if (known != null && known.sameContents(state)) {
+                        skippedParses.incrementAndGet();
+                        return;
+                    }
                     DsonParseResult result = null;
                     try {
                         // Don't unhash names as the Save State will do that
                         DsonFile f = new DsonFile(byteArray, UnhashBehavior.NONE);
                         String jsonString = f.toString() + "\n";
-                        result = new DsonParseResult(jsonString, false);
+                        result = new DsonParseResult(jsonString, f);
                     } catch (ParseException e) {
-                        result = new DsonParseResult(file.getFileName().toString() + ":" + e.getErrorOffset() + " - " + e.getMessage(), true);
+                        result = new DsonParseResult(name + ":" + e.getErrorOffset() + " - " + e.getMessage(), true);
                     } catch (Exception e) {
-                    	result = new DsonParseResult(file.getFileName().toString() + ":" + e.getMessage(), true);
+                    	result = new DsonParseResult(name + ":" + e.getMessage(), true);
+                    }
+                    if (callback != null) {
+                        callback.accept(name, result);
+                    }
+                    if (batchListener != null) {
+                        synchronized (this) {
+                            burst.put(name, result);
+                        }
+                    }
+                    BiConsumer<String, List<DsonDiff.Change>> listener = changeListener;
+                    if (listener != null && !result.encounteredError) {
+                        DsonFile previous = lastFiles.put(file, result.file);
+                        if (previous != null) {
+                            List<DsonDiff.Change> changes = DsonDiff.diff(previous, result.file);
+                            if (!changes.isEmpty()) {
+                                listener.accept(name, changes);
+                            }
+                        }
                     }
-                    callback.accept(file.getFileName().toString(), result);
                 } catch (NoSuchFileException e) {
                     System.err.println("Couldn't read/parse " + file.getFileName().toString());
                 }
@@ -111,74 +379,61 @@ public class DarkestSaveFileWatcher implements Runnable {
 
     @Override
     public void run() {
-        mainLoop();
-        this.stopped = true;
-    }
-    
-    private void mainLoop() {
-        try (Stream<Path> paths = Files.walk(saveDir)) {
-            paths.forEach(p -> tryHandleFile(p, callback, saveDir));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        while (!wantsStop) {
-            // wait for key to be signaled
-            WatchKey key;
-            try {
-                key = watcher.take();
-            } catch (InterruptedException x) {
-                return;
+        readAll(saveDir);
+        backend.run(new WatchBackend.Listener() {
+            @Override
+            public void fileChanged(Path file) {
+                schedule(file);
             }
 
-            for (WatchEvent<?> event : key.pollEvents()) {
-                WatchEvent.Kind<?> kind = event.kind();
-
-                // This key is registered only
-                // for ENTRY_MODIFY events,
-                // but an OVERFLOW event can
-                // occur regardless if events
-                // are lost or discarded.
-                if (kind == OVERFLOW) {
-                    continue;
-                }
-
-                // The filename is the
-                // context of the event.
-                @SuppressWarnings("unchecked")
-                WatchEvent<Path> ev = (WatchEvent<Path>) event;
-                Path filename = ev.context();
-
-                // Resolve the filename against the directory.
-                // If the filename is "test" and the directory is "foo",
-                // the resolved name is "test/foo".
-                Path child = saveDir.resolve(filename);
-                tryHandleFile(child, callback, saveDir);
+            @Override
+            public void directoryCreated(Path dir) {
+                // New profile: read what has already been written to it
+                readAll(dir);
             }
 
-            // Reset the key -- this step is critical if you want to
-            // receive further watch events. If the key is no longer valid,
-            // the directory is inaccessible so exit the loop.
-            boolean valid = key.reset();
-            if (!valid) {
-                break;
+            @Override
+            public void changesLost() {
+                overflowRescans.incrementAndGet();
+                rescan();
             }
+        });
+        this.stopped = true;
+    }
+    
+    private static class FileState {
+        final long size;
+        final long mtime;
+        final long hash;
+
+        FileState(long size, long mtime, long hash) {
+            this.size = size;
+            this.mtime = mtime;
+            this.hash = hash;
         }
-        try {
-            k.cancel();
-            watcher.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+
+        boolean sameContents(FileState other) {
+            return size == other.size && hash == other.hash;
         }
     }
-    
+
     public static class DsonParseResult {
         public final String data;   
         public final boolean encounteredError;
+        // The decoded file, null on errors
+        public final DsonFile file;
         
         
         public DsonParseResult(String data, boolean encounteredError) {
             this.data = data;
             this.encounteredError = encounteredError;
+            this.file = null;
+        }
+
+        public DsonParseResult(String data, DsonFile file) {
+            this.data = data;
+            this.encounteredError = false;
+            this.file = file;
         }
     }
 }
@@ -0,0 +1,141 @@
+package de.robojumper.ddsavereader.watcher;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uses the operating system's file change notifications through a
+ * {@link WatchService}, registering every directory below the root.
+ */
+public class NativeWatchBackend implements WatchBackend {
+
+    private Path root;
+    private volatile WatchService watcher;
+    // Registered directories
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+
+    private volatile boolean wantsStop = false;
+
+    @Override
+    public void open(Path root) throws IOException {
+        this.root = root;
+        watcher = FileSystems.getDefault().newWatchService();
+        registerAll(root);
+    }
+
+    private void registerAll(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                keys.put(dir.register(watcher, ENTRY_MODIFY, ENTRY_CREATE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public void run(Listener listener) {
+        while (!wantsStop) {
+            // wait for key to be signaled
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException x) {
+                break;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                WatchEvent.Kind<?> kind = event.kind();
+
+                // This key is registered only
+                // for ENTRY_MODIFY events,
+                // but an OVERFLOW event can
+                // occur regardless if events
+                // are lost or discarded.
+                if (kind == OVERFLOW) {
+                    try {
+                        // Directories created in the meantime. Registering is
+                        // idempotent.
+                        registerAll(root);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    listener.changesLost();
+                    continue;
+                }
+
+                // The filename is the
+                // context of the event.
+                @SuppressWarnings("unchecked")
+                WatchEvent<Path> ev = (WatchEvent<Path>) event;
+                Path filename = ev.context();
+
+                // Resolve the filename against the directory.
+                // If the filename is "test" and the directory is "foo",
+                // the resolved name is "test/foo".
+                Path dir = keys.get(key);
+                if (dir == null) {
+                    continue;
+                }
+                Path child = dir.resolve(filename);
+                if (kind == ENTRY_CREATE && Files.isDirectory(child)) {
+                    try {
+                        registerAll(child);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    listener.directoryCreated(child);
+                } else {
+                    listener.fileChanged(child);
+                }
+            }
+
+            // Reset the key -- this step is critical if you want to
+            // receive further watch events. If the key is no longer valid,
+            // the directory is inaccessible. Exit the loop once the save
+            // directory itself is gone.
+            boolean valid = key.reset();
+            if (!valid) {
+                keys.remove(key);
+                if (!Files.isDirectory(root) || keys.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        close();
+    }
+
+    @Override
+    public void stop() {
+        wantsStop = true;
+        // Wakes up run()
+        close();
+    }
+
+    private void close() {
+        try {
+            for (WatchKey key : keys.keySet()) {
+                key.cancel();
+            }
+            // Not opened yet
+            if (watcher != null) {
+                watcher.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package de.robojumper.ddsavereader.watcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import de.robojumper.ddsavereader.util.Helpers;
+
+/**
+ * Polls the size and modification time of all save files below the root, for
+ * file systems that don't deliver change notifications reliably (network
+ * shares, FUSE). File contents are only read by the watcher once the
+ * attributes of a file changed.
+ *
+ * The interval starts at the minimum, doubles with every poll that didn't find
+ * changes up to the maximum, and drops back to the minimum when something
+ * changes. Independently of that, the time spent scanning is kept below the
+ * given fraction of the time, so a huge or slow directory is polled less often.
+ */
+public class PollingWatchBackend implements WatchBackend {
+
+    public static final long DEFAULT_MIN_INTERVAL_MS = 500;
+    public static final long DEFAULT_MAX_INTERVAL_MS = 5000;
+    public static final double DEFAULT_CPU_BUDGET = 0.02;
+
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final double cpuBudget;
+
+    private Path root;
+    // Save file -> {size, modification time} when it was last seen. Only
+    // accessed from the polling thread after open.
+    private final Map<Path, long[]> index = new HashMap<>();
+    private volatile long intervalNanos;
+    private volatile long polls;
+
+    private final Object lock = new Object();
+    private boolean wantsStop = false;
+
+    public PollingWatchBackend() {
+        this(DEFAULT_MIN_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS, DEFAULT_CPU_BUDGET);
+    }
+
+    /**
+     * @param minIntervalMillis Interval while files are changing
+     * @param maxIntervalMillis Interval after a longer time without changes
+     * @param cpuBudget         Maximum fraction of the time spent scanning,
+     *                          between 0 and 1
+     */
+    public PollingWatchBackend(long minIntervalMillis, long maxIntervalMillis, double cpuBudget) {
+        if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis || cpuBudget <= 0 || cpuBudget > 1) {
+            throw new IllegalArgumentException("Invalid polling configuration");
+        }
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+        this.maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis);
+        this.cpuBudget = cpuBudget;
+        this.intervalNanos = minIntervalNanos;
+    }
+
+    @Override
+    public void open(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException(root + " is not a directory");
+        }
+        this.root = root;
+        // The watcher reads everything that exists when it starts
+        poll(null);
+    }
+
+    @Override
+    public void run(Listener listener) {
+        while (true) {
+            synchronized (lock) {
+                long deadline = System.nanoTime() + intervalNanos;
+                long wait;
+                while (!wantsStop && (wait = deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (wantsStop) {
+                    return;
+                }
+            }
+            if (!Files.isDirectory(root)) {
+                return;
+            }
+            long start = System.nanoTime();
+            boolean changed = poll(listener);
+            long took = System.nanoTime() - start;
+            long next = changed ? minIntervalNanos : Math.min(intervalNanos * 2, maxIntervalNanos);
+            intervalNanos = Math.max(next, (long) (took * (1 - cpuBudget) / cpuBudget));
+        }
+    }
+
+    // Compares all save files to the index, reporting changed ones if there is
+    // a listener. Returns whether anything changed.
+    private boolean poll(Listener listener) {
+        polls++;
+        boolean changed = false;
+        Set<Path> seen = new HashSet<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                if (!Helpers.isSaveFileName(p.getFileName().toString())) {
+                    continue;
+                }
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // Deleted in the meantime
+                    continue;
+                }
+                if (!attrs.isRegularFile()) {
+                    continue;
+                }
+                seen.add(p);
+                long[] current = { attrs.size(), attrs.lastModifiedTime().toMillis() };
+                long[] known = index.put(p, current);
+                if (known == null || known[0] != current[0] || known[1] != current[1]) {
+                    changed = true;
+                    if (listener != null) {
+                        listener.fileChanged(p);
+                    }
+                }
+            }
+            // Only forget deleted files after a complete walk
+            index.keySet().retainAll(seen);
+        } catch (IOException | RuntimeException e) {
+            // The walk fails if a directory disappears while walking it, the
+            // next poll will pick up the rest
+            e.printStackTrace();
+        }
+        return changed;
+    }
+
+    /**
+     * @return The current polling interval in milliseconds
+     */
+    public long getIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+    }
+
+    /**
+     * @return The number of times the directory was scanned
+     */
+    public long getPolls() {
+        return polls;
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            wantsStop = true;
+            lock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package de.robojumper.ddsavereader.watcher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Source of change notifications for a {@link DarkestSaveFileWatcher}. A backend
+ * only tells the watcher which files may have changed, reading, debouncing and
+ * skipping unchanged files is up to the watcher.
+ */
+public interface WatchBackend {
+
+    interface Listener {
+        // A file may have been created or modified
+        void fileChanged(Path file);
+
+        // A directory appeared, files in it may have been written before the
+        // backend noticed it
+        void directoryCreated(Path dir);
+
+        // Changes may have been lost
+        void changesLost();
+    }
+
+    /**
+     * Prepares watching a directory and all directories below it.
+     * 
+     * @throws IOException If the directory cannot be watched
+     */
+    void open(Path root) throws IOException;
+
+    /**
+     * Reports changes until {@link #stop()} is called or the directory can no
+     * longer be watched. Runs on the watcher's thread.
+     */
+    void run(Listener listener);
+
+    /**
+     * Makes {@link #run(Listener)} return soon. May be called from any thread.
+     */
+    void stop();
+}
@@ -0,0 +1,67 @@
+package de.robojumper.ddsavereader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonTypes;
+import de.robojumper.ddsavereader.file.DsonWriter;
+
+public class ExportTests {
+
+    private static final String JSON = "{\"base_root\": {\"a\": 1, \"name\": \"hello\", \"flag\": true, "
+            + "\"obj\": {\"b\": 2, \"heroClass\": \"###crusader\"}, \"empty\": {}}}";
+
+    private static List<JsonObject> export(UnhashBehavior behavior)
+            throws IOException, ParseException, InterruptedException {
+        String out = new String(Export.export(new DsonWriter(JSON).bytes(), "p/persist.test.json", behavior),
+                StandardCharsets.UTF_8);
+        assertTrue(out.endsWith("\n"));
+        List<JsonObject> lines = new ArrayList<>();
+        for (String line : out.split("\n")) {
+            lines.add(JsonParser.parseString(line).getAsJsonObject());
+        }
+        return lines;
+    }
+
+    @Test
+    public void testExport() throws IOException, ParseException, InterruptedException {
+        DsonTypes.offerName("crusader");
+        List<JsonObject> lines = export(UnhashBehavior.NONE);
+
+        // One line per leaf, in file order. Empty objects have no leaves.
+        List<String> paths = new ArrayList<>();
+        for (JsonObject line : lines) {
+            paths.add(line.get("path").getAsString());
+        }
+        String prefix = "p/persist.test.json:base_root/";
+        assertEquals(paths, Arrays.asList(prefix + "a", prefix + "name", prefix + "flag", prefix + "obj/b",
+                prefix + "obj/heroClass"));
+
+        assertEquals(lines.get(0).get("value").getAsInt(), 1);
+        assertEquals(lines.get(0).get("type").getAsString(), "TYPE_INT");
+        assertEquals(lines.get(1).get("value").getAsString(), "hello");
+        assertEquals(lines.get(2).get("value").getAsBoolean(), true);
+        assertEquals(lines.get(3).get("value").getAsInt(), 2);
+        int hash = DsonTypes.stringHash("crusader");
+        assertEquals(lines.get(4).get("value").getAsInt(), hash);
+        assertTrue(lines.get(4).get("hash").isJsonNull());
+
+        // Unhashed names keep their integer in hash
+        JsonObject unhashed = export(UnhashBehavior.UNHASH).get(4);
+        assertEquals(unhashed.get("value").getAsString(), "crusader");
+        assertEquals(unhashed.get("hash").getAsInt(), hash);
+    }
+}
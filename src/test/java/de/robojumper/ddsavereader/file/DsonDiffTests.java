@@ -0,0 +1,45 @@
+package de.robojumper.ddsavereader.file;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+
+public class DsonDiffTests {
+
+    @Test
+    public void testSameFile() throws IOException, ParseException {
+        byte[] data = TestProfiles.read("profile1", "persist.roster.json");
+        assertTrue(DsonDiff.diff(new DsonFile(data, UnhashBehavior.NONE), new DsonFile(data, UnhashBehavior.NONE))
+                .isEmpty());
+    }
+
+    @Test
+    public void testChanges() throws IOException, ParseException, InterruptedException {
+        DsonFile oldFile = TestProfiles.encode("{\"base_root\": {\"same\": {\"a\": 1, \"b\": \"text\"}, \"changed\": 2,"
+                + " \"removed\": {\"c\": 3}, \"nested\": {\"d\": 4, \"e\": 5}}}");
+        DsonFile newFile = TestProfiles.encode("{\"base_root\": {\"same\": {\"a\": 1, \"b\": \"text\"}, \"changed\": 7,"
+                + " \"nested\": {\"d\": 4, \"e\": \"five\"}, \"added\": 6}}");
+        List<String> changes = DsonDiff.diff(oldFile, newFile).stream().map(Object::toString)
+                .collect(Collectors.toList());
+        assertEquals(changes, List.of("~ base_root/changed: 2 -> 7", "- base_root/removed",
+                "~ base_root/nested/e: 5 -> \"five\"", "+ base_root/added: 6"));
+    }
+
+    @Test
+    public void testHierarchy() throws IOException, ParseException, InterruptedException {
+        // Same DATA bytes, only META1 differs
+        DsonFile oldFile = TestProfiles.encode("{\"a\": {\"x\": {\"y\": {}, \"z\": 1}}}");
+        DsonFile newFile = TestProfiles.encode("{\"a\": {\"x\": {\"y\": {\"z\": 1}}}}");
+        List<String> changes = DsonDiff.diff(oldFile, newFile).stream().map(Object::toString)
+                .collect(Collectors.toList());
+        assertEquals(changes, List.of("+ a/x/y/z: 1", "- a/x/z: 1"));
+    }
+}
@@ -0,0 +1,65 @@
+package de.robojumper.ddsavereader.file;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.file.DsonFile.Meta2Block;
+import de.robojumper.ddsavereader.file.DsonFile.Meta2Block.Meta2BlockEntry;
+
+public class DsonFileTests {
+
+    private static Meta2Block makeBlock(int... offsets) {
+        Meta2Block block = new Meta2Block();
+        block.entries = new Meta2BlockEntry[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            block.entries[i] = new Meta2BlockEntry();
+            block.entries[i].offset = offsets[i];
+        }
+        return block;
+    }
+
+    // The linear scan the lookup replaces: the first entry in entry order
+    // with a larger offset
+    private static int findLinear(Meta2Block block, int off) {
+        for (Meta2BlockEntry e : block.entries) {
+            if (e.offset > off) {
+                return e.offset;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testFindSmallestOffsetLargerThan() {
+        Meta2Block block = makeBlock(0, 10, 20, 30);
+        assertEquals(block.findSmallestOffsetLargerThan(0), 10);
+        assertEquals(block.findSmallestOffsetLargerThan(15), 20);
+        assertEquals(block.findSmallestOffsetLargerThan(30), -1);
+        assertEquals(makeBlock().findSmallestOffsetLargerThan(0), -1);
+
+        // META2 isn't necessarily in DATA order, the first larger entry wins
+        // even if a later one is closer
+        block = makeBlock(0, 40, 10, 20);
+        assertEquals(block.findSmallestOffsetLargerThan(0), 40);
+        assertEquals(block.findSmallestOffsetLargerThan(10), 40);
+        assertEquals(block.findSmallestOffsetLargerThan(40), -1);
+
+        Random random = new Random(5);
+        for (int n = 0; n < 200; n++) {
+            int[] offsets = new int[random.nextInt(50)];
+            int next = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                // Mostly ascending, sometimes out of order
+                next += random.nextInt(20);
+                offsets[i] = random.nextInt(10) == 0 ? random.nextInt(next + 1) : next;
+            }
+            block = makeBlock(offsets);
+            for (int off = -1; off <= next + 1; off++) {
+                assertEquals(block.findSmallestOffsetLargerThan(off), findLinear(block, off));
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package de.robojumper.ddsavereader.file;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteStreams;
+
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+
+/**
+ * Corrupts save files and checks that the round-trip verification reports the
+ * corrupted field.
+ */
+public class DsonVerifierTests {
+
+    private static byte[] load(String file) throws IOException {
+        return ByteStreams.toByteArray(DsonVerifierTests.class.getClassLoader().getResourceAsStream("./" + file));
+    }
+
+    // Offset of the only occurrence of the text in the file
+    private static int find(byte[] data, String text) {
+        byte[] needle = text.getBytes(StandardCharsets.UTF_8);
+        int found = -1;
+        outer: for (int i = 0; i + needle.length <= data.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (data[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            assertEquals(found, -1, text + " is not unique");
+            found = i;
+        }
+        assertTrue(found >= 0, text + " not found");
+        return found;
+    }
+
+    // Replaces the bytes with ones that aren't valid UTF-8. They decode to
+    // replacement characters, which encode to three bytes each.
+    private static byte[] corrupt(byte[] data, int off, int length) {
+        byte[] corrupted = data.clone();
+        for (int i = off; i < off + length; i++) {
+            corrupted[i] = (byte) 0xFF;
+        }
+        return corrupted;
+    }
+
+    @Test
+    public void testIntactFiles() throws IOException, InterruptedException {
+        for (String f : new String[] { "profile1/persist.roster.json", "profile1/persist.estate.json",
+                "profile1/persist.campaign_log.json" }) {
+            DsonVerifier.Result r = DsonVerifier.verify(load(f));
+            assertTrue(r.isOk(), f + ": " + r);
+        }
+    }
+
+    @Test
+    public void testCorruptedString() throws IOException, ParseException, InterruptedException {
+        byte[] data = new DsonWriter("{\"base_root\": {\"a\": 1, \"obj\": {\"name\": \"hello there\", \"b\": 2, "
+                + "\"inner\": {\"c\": \"xyzw\"}}, \"last\": 5}}").bytes();
+        int off = find(data, "hello");
+        assertEquals(new DsonFile(data, UnhashBehavior.NONE).getFieldPathAt(off), "base_root/obj/name");
+
+        DsonVerifier.Result r = DsonVerifier.verify(corrupt(data, off, 5));
+        assertEquals(r.status, DsonVerifier.Status.SIZE_MISMATCH);
+        // The string's length
+        assertEquals(r.offset, off - 4);
+        assertEquals(r.fieldPath, "base_root/obj/name");
+    }
+
+    @Test
+    public void testCorruptedEmbeddedFile() throws IOException, ParseException, InterruptedException {
+        // The first hero's name, in the hero's embedded file
+        byte[] data = load("profile1/persist.roster.json");
+        int off = find(data, "Reynauld");
+        String path = "base_root/heroes/1/hero_file_data/raw_data/base_root/actor/name";
+        assertEquals(new DsonFile(data, UnhashBehavior.NONE).getFieldPathAt(off), path);
+
+        DsonVerifier.Result r = DsonVerifier.verify(corrupt(data, off, 8));
+        assertEquals(r.status, DsonVerifier.Status.SIZE_MISMATCH);
+        assertEquals(r.offset, off - 4);
+        assertEquals(r.fieldPath, path);
+    }
+
+    @Test
+    public void testCorruptedName() throws IOException, ParseException, InterruptedException {
+        byte[] data = new DsonWriter("{\"base_root\": {\"a\": 1, \"inner\": {\"c\": 2}}}").bytes();
+        int off = find(data, "inner");
+        byte[] corrupted = data.clone();
+        corrupted[off + 1] = 'X';
+
+        // The name no longer matches its hash, so the file doesn't decode
+        DsonVerifier.Result r = DsonVerifier.verify(corrupted);
+        assertEquals(r.status, DsonVerifier.Status.DECODE_ERROR);
+        // The decoder reports name errors from the start of the DATA block
+        assertEquals(r.offset, off - new DsonFile(data, UnhashBehavior.NONE).getDataOffset());
+        assertTrue(r.message.contains("iXner"), r.message);
+    }
+}
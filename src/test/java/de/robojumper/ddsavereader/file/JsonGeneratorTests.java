@@ -0,0 +1,60 @@
+package de.robojumper.ddsavereader.file;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.text.ParseException;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+
+/**
+ * Checks that streaming a file through a Jackson generator produces the same
+ * document as the text decoder.
+ */
+public class JsonGeneratorTests {
+
+    private static final String[] FILES = { "profile1/persist.roster.json", "profile1/persist.map.json",
+            "profile1/persist.upgrades.json", "profile1/persist.campaign_log.json", "profileReddit/persist.quest.json",
+            "backgroundNames/persist.raid.json", "skillCooldownValues/persist.raid.json",
+            "nonAsciiField/persist.roster.json", };
+
+    @BeforeClass
+    public void readNames() throws IOException {
+        BufferedReader br = new BufferedReader(
+                new InputStreamReader(JsonGeneratorTests.class.getClassLoader().getResourceAsStream("./names.txt")));
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (!line.equals("")) {
+                DsonTypes.offerName(line);
+            }
+        }
+    }
+
+    @Test
+    public void testGeneratorMatchesText() throws ParseException, IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        for (String name : FILES) {
+            for (UnhashBehavior behavior : UnhashBehavior.values()) {
+                DsonFile file = new DsonFile(ByteStreams.toByteArray(
+                        JsonGeneratorTests.class.getClassLoader().getResourceAsStream("./" + name)), behavior);
+                StringWriter w = new StringWriter();
+                try (JsonGenerator gen = new JsonFactory().createGenerator(w)) {
+                    file.writeJson(gen);
+                }
+                assertEquals(mapper.readTree(w.toString()), mapper.readTree(file.getJSonString(0, false)),
+                        name + " (" + behavior + ") streams differently");
+            }
+        }
+    }
+}
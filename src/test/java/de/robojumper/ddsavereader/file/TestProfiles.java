@@ -0,0 +1,79 @@
+package de.robojumper.ddsavereader.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+
+/**
+ * The save files of the test resource profiles, and edits of them for tests
+ * that need a save to change. Public because tests of several packages use
+ * them.
+ */
+public final class TestProfiles {
+
+    // The files the model is bound from
+    public static final String[] SAVE_FILES = { "persist.roster.json", "persist.estate.json", "persist.town.json",
+            "persist.campaign_log.json" };
+
+    private TestProfiles() {
+    }
+
+    public static byte[] read(String profile, String file) throws IOException {
+        try (InputStream in = TestProfiles.class.getClassLoader().getResourceAsStream("./" + profile + "/" + file)) {
+            if (in == null) {
+                throw new IOException("No test save " + profile + "/" + file);
+            }
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    public static Map<String, DsonFile> load(String profile) throws IOException, ParseException {
+        return load(profile, SAVE_FILES);
+    }
+
+    // The files by name, in the given order, without unhashing
+    public static Map<String, DsonFile> load(String profile, String... files) throws IOException, ParseException {
+        Map<String, DsonFile> loaded = new LinkedHashMap<>();
+        for (String f : files) {
+            loaded.put(f, new DsonFile(read(profile, f), UnhashBehavior.NONE));
+        }
+        return loaded;
+    }
+
+    public static JsonObject toJson(DsonFile file) {
+        return JsonParser.parseString(file.toString()).getAsJsonObject();
+    }
+
+    // Encodes ourselves, the files of the game have garbage bits that
+    // re-encoding doesn't keep
+    public static DsonFile encode(String json) throws IOException, ParseException, InterruptedException {
+        return new DsonFile(new DsonWriter(json).bytes(), UnhashBehavior.NONE);
+    }
+
+    // ID of the first hero of a persist.roster.json
+    public static String firstHeroId(JsonObject roster) {
+        return roster.getAsJsonObject("base_root").getAsJsonObject("heroes").keySet().iterator().next();
+    }
+
+    // The base_root of a hero's embedded file
+    public static JsonObject heroData(JsonObject roster, String id) {
+        return roster.getAsJsonObject("base_root").getAsJsonObject("heroes").getAsJsonObject(id)
+                .getAsJsonObject("hero_file_data").getAsJsonObject("raw_data").getAsJsonObject("base_root");
+    }
+
+    // The first hero gains some xp, returns its ID
+    public static String gainXp(JsonObject roster, int xp) {
+        String id = firstHeroId(roster);
+        JsonObject hero = heroData(roster, id);
+        hero.addProperty("resolveXp", hero.get("resolveXp").getAsInt() + xp);
+        return id;
+    }
+}
@@ -0,0 +1,96 @@
+package de.robojumper.ddsavereader.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonTypes;
+import de.robojumper.ddsavereader.file.DsonWriter;
+
+public class CampaignLogTests {
+
+    private static List<List<String>> cells(List<CampaignLog.BaseRTTI> events) {
+        return events.stream().map(CampaignLog.BaseRTTI::getCells).collect(Collectors.toList());
+    }
+
+    private static List<List<String>> cells(CampaignLog log) {
+        return cells(log.getChapters().stream().flatMap(c -> c.events.stream()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException, ParseException, InterruptedException {
+        byte[] data = ByteStreams.toByteArray(
+                CampaignLogTests.class.getClassLoader().getResourceAsStream("./modlimit/persist.campaign_log.json"));
+        DsonFile full = new DsonFile(data, UnhashBehavior.NONE);
+
+        // The same log a week earlier, without the last chapter
+        JsonObject root = JsonParser.parseString(full.toString()).getAsJsonObject();
+        JsonObject chapters = root.getAsJsonObject("base_root").getAsJsonObject("chapters");
+        String last = chapters.keySet().stream().max((a, b) -> Integer.parseInt(a) - Integer.parseInt(b)).get();
+        CampaignLog.Chapter lastChapter = SaveState.GSON.fromJson(chapters.get(last), CampaignLog.Chapter.class);
+        chapters.remove(last);
+        DsonFile earlier = new DsonFile(new DsonWriter(root.toString()).bytes(), UnhashBehavior.NONE);
+
+        SaveState state = new SaveState();
+        state.updateFiles(Collections.singletonMap("persist.campaign_log.json", earlier));
+        CampaignLog before = state.getCampaignLog();
+        long version = state.getVersion();
+        state.updateFiles(Collections.singletonMap("persist.campaign_log.json", full));
+        CampaignLog after = state.getCampaignLog();
+
+        // Same result as binding the JSON
+        CampaignLog bound = new CampaignLog();
+        bound.update(full.toString());
+        assertEquals(cells(after), cells(bound));
+        assertEquals(after.getNumWeeks(), bound.getNumWeeks());
+
+        // Only the new chapter is new, the others are reused
+        assertTrue(lastChapter.events.size() > 0);
+        assertEquals(cells(after.getEventsSince(version)), cells(lastChapter.events));
+        assertTrue(after.getEventsSince(state.getVersion()).isEmpty());
+        assertEquals(after.getEventsSince(0).size(), bound.getChapters().stream().mapToInt(c -> c.events.size()).sum());
+        for (int i = 0; i < before.getChapters().size(); i++) {
+            assertSame(after.getChapters().get(i), before.getChapters().get(i));
+        }
+    }
+
+    @Test
+    public void testUnhashedInts() throws IOException, ParseException, InterruptedException {
+        byte[] data = ByteStreams.toByteArray(
+                CampaignLogTests.class.getClassLoader().getResourceAsStream("./modlimit/persist.campaign_log.json"));
+        // Ints that happen to be the hash of a known name are unhashed to it
+        DsonTypes.offerName("crusader");
+        int hash = DsonTypes.stringHash("crusader");
+        JsonObject root = JsonParser.parseString(new DsonFile(data, UnhashBehavior.NONE).toString())
+                .getAsJsonObject();
+        JsonObject baseRoot = root.getAsJsonObject("base_root");
+        baseRoot.addProperty("total_weeks", hash);
+        JsonObject chapters = baseRoot.getAsJsonObject("chapters");
+        chapters.getAsJsonObject(chapters.keySet().iterator().next()).addProperty("chapterIndex", hash);
+        byte[] bytes = new DsonWriter(root.toString()).bytes();
+
+        CampaignLog expected = new CampaignLog();
+        expected.update(new DsonFile(bytes, UnhashBehavior.NONE), null, 1);
+        for (UnhashBehavior behavior : new UnhashBehavior[] { UnhashBehavior.UNHASH, UnhashBehavior.POUNDUNHASH }) {
+            CampaignLog log = new CampaignLog();
+            log.update(new DsonFile(bytes, behavior), null, 1);
+            assertEquals(log.getNumWeeks(), hash);
+            assertEquals(log.getChapters().get(0).chapterIndex, hash);
+            assertEquals(cells(log), cells(expected));
+        }
+    }
+}
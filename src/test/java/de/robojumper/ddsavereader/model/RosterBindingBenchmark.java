@@ -0,0 +1,100 @@
+package de.robojumper.ddsavereader.model;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Map;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+
+/**
+ * Roster binding throughput. The heroes of a real roster are copied under new
+ * ids and names until the roster has the requested size, then the roster is
+ * bound over and over. Afterwards, hero name lookups are timed on it.
+ *
+ * gradle bench -Pbench=de.robojumper.ddsavereader.model.RosterBindingBenchmark
+ * -PbenchArgs="heroes seconds"
+ */
+public class RosterBindingBenchmark {
+
+    public static void main(String[] args) throws IOException, ParseException {
+        int heroCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+
+        String json = makeRoster(heroCount);
+        System.out.println(String.format("Roster with %d heroes, %.1f MB of JSON", heroCount, json.length() / 1e6));
+
+        // Warm up for a third of the time, then measure
+        run(json, seconds / 3);
+        long start = System.nanoTime();
+        int runs = run(json, seconds);
+        double took = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("%d bindings in %.2fs: %.1f ms per roster, %.0f heroes/s, %.1f MB/s", runs,
+                took, took * 1000 / runs, (double) runs * heroCount / took, (double) runs * json.length() / took / 1e6));
+
+        Roster r = new Roster();
+        r.update(json);
+        Hero h = r.getHeroes().iterator().next();
+        String name = h.getName();
+        String typo = name.substring(0, 2) + name.substring(3);
+        lookups(r, "exact", name);
+        lookups(r, "prefix", name.substring(0, name.length() - 1));
+        lookups(r, "typo", typo);
+        lookups(r, "miss", "nobody by that name");
+    }
+
+    private static void lookups(Roster r, String kind, String query) {
+        int n = 20000;
+        Integer id = null;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                id = r.findHeroID(query);
+            }
+            if (warmup == 1) {
+                System.out.println(String.format("%-6s lookup of \"%s\": %.1f us (%s)", kind, query,
+                        (System.nanoTime() - start) / 1e3 / n, id != null ? r.getHero(id).getName() : "not found"));
+            }
+        }
+    }
+
+    private static int run(String json, double seconds) {
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        int runs = 0;
+        do {
+            Roster r = new Roster();
+            r.update(json);
+            if (r.getHeroes().isEmpty()) {
+                throw new IllegalStateException("No heroes bound");
+            }
+            runs++;
+        } while (System.nanoTime() < end);
+        return runs;
+    }
+
+    private static String makeRoster(int heroCount) throws IOException, ParseException {
+        byte[] data = ByteStreams.toByteArray(RosterBindingBenchmark.class.getClassLoader()
+                .getResourceAsStream("./modlimit/persist.roster.json"));
+        JsonObject root = JsonParser.parseString(new DsonFile(data, UnhashBehavior.NONE).getJSonString(0, false))
+                .getAsJsonObject();
+        JsonObject heroes = root.getAsJsonObject("base_root").getAsJsonObject("heroes");
+        JsonElement[] templates = heroes.entrySet().stream().map(Map.Entry::getValue).toArray(JsonElement[]::new);
+
+        JsonObject bigHeroes = new JsonObject();
+        for (int i = 0; i < heroCount; i++) {
+            JsonObject hero = templates[i % templates.length].deepCopy().getAsJsonObject();
+            JsonObject actor = hero.getAsJsonObject("hero_file_data").getAsJsonObject("raw_data")
+                    .getAsJsonObject("base_root").getAsJsonObject("actor");
+            actor.addProperty("name", actor.get("name").getAsString() + " " + i);
+            bigHeroes.add(Integer.toString(i), hero);
+        }
+        root.getAsJsonObject("base_root").add("heroes", bigHeroes);
+        return root.toString();
+    }
+}
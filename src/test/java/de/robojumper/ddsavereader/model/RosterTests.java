@@ -0,0 +1,89 @@
+package de.robojumper.ddsavereader.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonObject;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonTypes;
+import de.robojumper.ddsavereader.file.DsonWriter;
+import de.robojumper.ddsavereader.file.TestProfiles;
+
+public class RosterTests {
+
+    @Test
+    public void testIncrementalUpdate() throws IOException, ParseException, InterruptedException {
+        JsonObject root = TestProfiles.toJson(
+                new DsonFile(TestProfiles.read("profile1", "persist.roster.json"), UnhashBehavior.NONE));
+        // Encode both versions ourselves, the game writes garbage bits
+        DsonFile original = TestProfiles.encode(root.toString());
+        String changedId = TestProfiles.gainXp(root, 5);
+        DsonFile changed = TestProfiles.encode(root.toString());
+
+        SaveState state = new SaveState();
+        state.updateFiles(Collections.singletonMap("persist.roster.json", original));
+        Roster before = state.getRoster();
+        state.updateFiles(Collections.singletonMap("persist.roster.json", changed));
+        Roster after = state.getRoster();
+
+        Roster bound = new Roster();
+        bound.update(changed.toString());
+        assertEquals(after.getHeroes().size(), bound.getHeroes().size());
+        assertEquals(after.getNumDismissedHeroes(), bound.getNumDismissedHeroes());
+        assertEquals(after.getParty().size(), bound.getParty().size());
+        for (Hero h : bound.getHeroes()) {
+            Hero b = before.getHero(h.getID());
+            Hero a = after.getHero(h.getID());
+            assertEquals(a.getName(), h.getName());
+            assertEquals(a.getXP(), h.getXP());
+            assertEquals(a.getQuirks(), h.getQuirks());
+            assertEquals(new ArrayList<>(a.getSkills()), new ArrayList<>(h.getSkills()));
+            if (h.getID() == Integer.parseInt(changedId)) {
+                assertNotSame(a, b);
+                assertEquals(a.getXP(), b.getXP() + 5);
+            } else {
+                assertSame(a, b);
+            }
+        }
+    }
+
+    @Test
+    public void testUnhashedInts() throws IOException, ParseException, InterruptedException {
+        byte[] data = TestProfiles.read("profile1", "persist.roster.json");
+        // Ints that happen to be the hash of a known name are unhashed to it
+        DsonTypes.offerName("crusader");
+        int hash = DsonTypes.stringHash("crusader");
+        JsonObject root = TestProfiles.toJson(new DsonFile(data, UnhashBehavior.NONE));
+        root.getAsJsonObject("base_root").addProperty("dismissed_hero_count", hash);
+        TestProfiles.heroData(root, TestProfiles.firstHeroId(root)).addProperty("resolveXp", hash);
+        byte[] bytes = new DsonWriter(root.toString()).bytes();
+
+        Roster expected = new Roster();
+        expected.update(new DsonFile(bytes, UnhashBehavior.NONE), null, 1);
+        for (UnhashBehavior behavior : new UnhashBehavior[] { UnhashBehavior.UNHASH, UnhashBehavior.POUNDUNHASH }) {
+            Roster roster = new Roster();
+            roster.update(new DsonFile(bytes, behavior), null, 1);
+            assertEquals(roster.getNumDismissedHeroes(), hash);
+            assertEquals(roster.getParty().size(), expected.getParty().size());
+            for (Hero h : expected.getHeroes()) {
+                Hero r = roster.getHero(h.getID());
+                assertEquals(r.getName(), h.getName());
+                assertEquals(r.getHeroClass(), h.getHeroClass());
+                assertEquals(r.getXP(), h.getXP());
+                assertEquals(r.getQuirks(), h.getQuirks());
+            }
+            assertTrue(roster.getHeroes().stream().anyMatch(h -> h.getXP() == hash));
+        }
+    }
+}
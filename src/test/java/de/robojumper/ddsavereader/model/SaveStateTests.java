@@ -0,0 +1,117 @@
+package de.robojumper.ddsavereader.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonTypes;
+import de.robojumper.ddsavereader.file.DsonWriter;
+import de.robojumper.ddsavereader.file.TestProfiles;
+
+public class SaveStateTests {
+
+    private static final String[] FILES = { "persist.roster.json", "persist.estate.json", "persist.town.json" };
+
+    // Something that tells the two saves apart, for every file
+    private static List<Object> signature(SaveState.Snapshot s) {
+        Map<String, Map<Integer, String>> activities = new LinkedHashMap<>();
+        s.getTown().townData.buildings.forEach((name, building) -> activities.put(name, building.activities));
+        return Arrays.asList(s.getRoster().getHeroes().size(), s.getEstate().getResources(), activities);
+    }
+
+    @Test
+    public void testUnhashedFiles() throws IOException, ParseException, InterruptedException {
+        // A hero id that happens to be the hash of a known name
+        DsonTypes.offerName("crusader");
+        int id = DsonTypes.stringHash("crusader");
+        byte[] town = new DsonWriter("{\"base_root\": {\"buildings\": {\"tavern\": {\"activities\": "
+                + "{\"bar\": {\"slot_0\": {\"hero\": " + id + "}}}}}}}").bytes();
+        for (UnhashBehavior behavior : UnhashBehavior.values()) {
+            SaveState state = new SaveState();
+            state.updateFiles(Collections.singletonMap("persist.town.json", new DsonFile(town, behavior)));
+            assertEquals(state.getTown().townData.buildings.get("tavern").activities,
+                    Collections.singletonMap(id, "bar"), behavior.name());
+        }
+    }
+
+    @Test
+    public void testConcurrentSnapshots() throws Exception {
+        List<Map<String, DsonFile>> saves = Arrays.asList(TestProfiles.load("profile1", FILES),
+                TestProfiles.load("profileSwitch", FILES));
+        List<List<Object>> signatures = new ArrayList<>();
+        for (Map<String, DsonFile> save : saves) {
+            SaveState state = new SaveState();
+            state.updateFiles(save);
+            signatures.add(signature(state.snapshot()));
+        }
+        for (int i = 0; i < FILES.length; i++) {
+            assertNotEquals(signatures.get(0).get(i), signatures.get(1).get(i), FILES[i]);
+        }
+
+        SaveState state = new SaveState();
+        state.updateFiles(saves.get(0));
+        int writers = 2;
+        int readers = 4;
+        int snapshots = 300;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + readers);
+        AtomicBoolean reading = new AtomicBoolean(true);
+        AtomicInteger updates = new AtomicInteger();
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int first = w;
+                writes.add(pool.submit(() -> {
+                    for (int i = first; reading.get(); i++) {
+                        state.updateFiles(saves.get(i % 2));
+                        updates.incrementAndGet();
+                    }
+                }));
+            }
+            List<Future<?>> reads = new ArrayList<>();
+            for (int r = 0; r < readers; r++) {
+                reads.add(pool.submit(() -> {
+                    long lastVersion = 0;
+                    for (int i = 0; i < snapshots; i++) {
+                        SaveState.Snapshot s = state.snapshot();
+                        assertTrue(s.version >= lastVersion);
+                        lastVersion = s.version;
+                        List<Object> seen = signature(s);
+                        assertTrue(signatures.contains(seen), "Mixed save at version " + s.version + ": " + seen);
+                    }
+                }));
+            }
+            for (Future<?> f : reads) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+            reading.set(false);
+            for (Future<?> f : writes) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            reading.set(false);
+            pool.shutdownNow();
+        }
+        // Every batch was one version
+        assertEquals(state.getVersion(), 1 + updates.get());
+        assertTrue(signatures.contains(signature(state.snapshot())));
+    }
+}
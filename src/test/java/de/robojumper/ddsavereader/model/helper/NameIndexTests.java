@@ -0,0 +1,68 @@
+package de.robojumper.ddsavereader.model.helper;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class NameIndexTests {
+
+    private final NameIndex<Integer> index = new NameIndex<>(
+            Map.of("reynauld", 1, "dismas", 2, "dismal", 3, "junia", 4, "paracelsus", 5));
+
+    @Test
+    public void testFind() {
+        assertEquals(index.find("dismas"), Integer.valueOf(2));
+        // Unique prefix
+        assertEquals(index.find("rey"), Integer.valueOf(1));
+        assertEquals(index.find("para"), Integer.valueOf(5));
+        // Typos
+        assertEquals(index.find("reynald"), Integer.valueOf(1));
+        assertEquals(index.find("paraclesus"), Integer.valueOf(5));
+        assertEquals(index.find("junio"), Integer.valueOf(4));
+        // Ambiguous prefix, ambiguous typo, too far off
+        assertNull(index.find("dism"));
+        assertNull(index.find("dismak"));
+        assertNull(index.find("vestal"));
+        assertNull(index.find(""));
+    }
+
+    @Test
+    public void testDistance() {
+        Random r = new Random(7);
+        for (int n = 0; n < 10000; n++) {
+            String a = randomString(r);
+            String b = randomString(r);
+            int full = levenshtein(a, b);
+            for (int limit = 0; limit <= 3; limit++) {
+                assertEquals(NameIndex.distance(a, b, limit), Math.min(full, limit + 1), a + " / " + b);
+            }
+        }
+    }
+
+    private static String randomString(Random r) {
+        char[] c = new char[r.nextInt(8)];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = (char) ('a' + r.nextInt(3));
+        }
+        return new String(c);
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                    d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,136 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class GoogleSheetsApiTests {
+
+    private static final String SHEET = "sheet-id";
+    private static final String URL = "https://sheets.googleapis.com/v4/spreadsheets/" + SHEET;
+
+    // Records the requests and answers them all with the same response
+    private static class RecordingTransport extends MockHttpTransport {
+        final List<String> requests = new ArrayList<>();
+        final List<JsonObject> bodies = new ArrayList<>();
+        String response = "{}";
+
+        @Override
+        public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest(url) {
+                @Override
+                public LowLevelHttpResponse execute() throws IOException {
+                    requests.add(method + " " + url);
+                    String content = getContentAsString();
+                    bodies.add(content.isEmpty() ? null : JsonParser.parseString(content).getAsJsonObject());
+                    return new MockLowLevelHttpResponse().setContentType(Json.MEDIA_TYPE).setContent(response);
+                }
+            };
+        }
+    }
+
+    private RecordingTransport transport;
+    private GoogleSheetsApi api;
+
+    @BeforeMethod
+    public void setUp() {
+        transport = new RecordingTransport();
+        Sheets service = new Sheets.Builder(transport, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("test").build();
+        api = new GoogleSheetsApi(service, SHEET);
+    }
+
+    private JsonArray onlyBatchUpdate() {
+        assertEquals(transport.requests, Arrays.asList("POST " + URL + ":batchUpdate"));
+        return transport.bodies.get(0).getAsJsonArray("requests");
+    }
+
+    @Test
+    public void testGetSheetTitles() throws IOException {
+        transport.response = "{\"sheets\": [{\"properties\": {\"title\": \"Info\"}}, "
+                + "{\"properties\": {\"title\": \"Roster\"}}]}";
+        assertEquals(api.getSheetTitles(), new HashSet<>(Arrays.asList("Info", "Roster")));
+        assertEquals(transport.requests, Arrays.asList("GET " + URL));
+    }
+
+    @Test
+    public void testAddSheets() throws IOException {
+        api.addSheets(Arrays.asList(SheetTables.ROSTER, SheetTables.PARTY));
+        JsonArray requests = onlyBatchUpdate();
+        // Roster gets a frozen bold header, Party a bold first column
+        assertEquals(requests.size(), 4);
+        JsonObject roster = requests.get(0).getAsJsonObject().getAsJsonObject("addSheet")
+                .getAsJsonObject("properties");
+        assertEquals(roster.get("title").getAsString(), SheetTables.ROSTER);
+        assertEquals(roster.get("sheetId").getAsInt(), GoogleSheetsApi.ROSTER_SHEET_ID);
+        assertEquals(roster.getAsJsonObject("gridProperties").get("frozenRowCount").getAsInt(), 1);
+        JsonObject header = requests.get(1).getAsJsonObject().getAsJsonObject("repeatCell");
+        assertEquals(header.getAsJsonObject("range").get("endRowIndex").getAsInt(), 1);
+        assertEquals(header.getAsJsonObject("cell").getAsJsonObject("userEnteredFormat")
+                .getAsJsonObject("textFormat").get("bold").getAsBoolean(), true);
+
+        JsonObject party = requests.get(2).getAsJsonObject().getAsJsonObject("addSheet")
+                .getAsJsonObject("properties");
+        assertEquals(party.get("title").getAsString(), SheetTables.PARTY);
+        assertEquals(party.get("sheetId").getAsInt(), GoogleSheetsApi.PARTY_SHEET_ID);
+        JsonObject column = requests.get(3).getAsJsonObject().getAsJsonObject("repeatCell")
+                .getAsJsonObject("range");
+        assertEquals(column.get("sheetId").getAsInt(), GoogleSheetsApi.PARTY_SHEET_ID);
+        assertEquals(column.get("endColumnIndex").getAsInt(), 1);
+    }
+
+    @Test
+    public void testSetPartyLayout() throws IOException {
+        api.setPartyLayout(Arrays.asList(0, 2));
+        JsonArray requests = onlyBatchUpdate();
+        // Unmerge and clear the borders, then merge and frame every slot
+        assertEquals(requests.size(), 6);
+        assertEquals(requests.get(0).getAsJsonObject().has("unmergeCells"), true);
+        assertEquals(requests.get(1).getAsJsonObject().getAsJsonObject("updateBorders").getAsJsonObject("top")
+                .get("style").getAsString(), "NONE");
+        JsonObject merge = requests.get(4).getAsJsonObject().getAsJsonObject("mergeCells");
+        assertEquals(merge.get("mergeType").getAsString(), "MERGE_ROWS");
+        JsonObject range = merge.getAsJsonObject("range");
+        assertEquals(range.get("sheetId").getAsInt(), GoogleSheetsApi.PARTY_SHEET_ID);
+        assertEquals(range.get("startColumnIndex").getAsInt(), SheetTables.getPartyColumn(2));
+        assertEquals(range.get("endColumnIndex").getAsInt(), SheetTables.getPartyColumn(2) + 2);
+        assertEquals(range.get("endRowIndex").getAsInt(), SheetTables.PARTY_ROWS);
+        assertEquals(requests.get(5).getAsJsonObject().getAsJsonObject("updateBorders").getAsJsonObject("left")
+                .get("style").getAsString(), "SOLID");
+    }
+
+    @Test
+    public void testUpdateValues() throws IOException {
+        api.updateValues(Arrays.asList(
+                new CellRange(SheetTables.ROSTER, 1, 1, Arrays.asList(Arrays.asList(5, ""), Arrays.asList(6, "y"))),
+                new CellRange(SheetTables.ESTATE, 4, 0, Arrays.asList(Arrays.asList("e")))));
+        assertEquals(transport.requests, Arrays.asList("POST " + URL + "/values:batchUpdate"));
+        JsonObject body = transport.bodies.get(0);
+        assertEquals(body.get("valueInputOption").getAsString(), "RAW");
+        JsonArray data = body.getAsJsonArray("data");
+        assertEquals(data.size(), 2);
+        assertEquals(data.get(0).getAsJsonObject().get("range").getAsString(), "Roster!B2:C3");
+        assertEquals(data.get(0).getAsJsonObject().get("values").toString(), "[[5,\"\"],[6,\"y\"]]");
+        assertEquals(data.get(1).getAsJsonObject().get("range").getAsString(), "Estate!A5:A5");
+        assertEquals(data.get(1).getAsJsonObject().get("values").toString(), "[[\"e\"]]");
+    }
+}
@@ -0,0 +1,100 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory stand-in for the spreadsheet service that counts requests and
+ * written cells.
+ */
+public class LocalSheets implements SheetsApi {
+
+    // Cells by sheet, then by row, then by column
+    private final Map<String, Map<Integer, Map<Integer, Object>>> sheets = new HashMap<>();
+
+    public int requests = 0;
+    public int cellsWritten = 0;
+    public List<Integer> partySlots = null;
+
+    @Override
+    public Set<String> getSheetTitles() {
+        requests++;
+        return sheets.keySet();
+    }
+
+    @Override
+    public void addSheets(Collection<String> titles) {
+        requests++;
+        for (String title : titles) {
+            sheets.put(title, new HashMap<>());
+        }
+    }
+
+    @Override
+    public void setPartyLayout(List<Integer> slots) {
+        requests++;
+        partySlots = slots;
+    }
+
+    @Override
+    public void updateValues(List<CellRange> ranges) {
+        requests++;
+        for (CellRange range : ranges) {
+            Map<Integer, Map<Integer, Object>> sheet = sheets.get(range.sheet);
+            if (sheet == null) {
+                throw new IllegalArgumentException("No sheet " + range.sheet);
+            }
+            for (int r = 0; r < range.values.size(); r++) {
+                List<Object> row = range.values.get(r);
+                for (int c = 0; c < row.size(); c++) {
+                    sheet.computeIfAbsent(range.row + r, k -> new HashMap<>()).put(range.col + c, row.get(c));
+                    cellsWritten++;
+                }
+            }
+        }
+    }
+
+    // The non-empty cells of a sheet, as rows without trailing empty cells
+    public List<List<Object>> getTable(String title) {
+        Map<Integer, Map<Integer, Object>> sheet = sheets.get(title);
+        int rows = sheet.keySet().stream().mapToInt(r -> r + 1).max().orElse(0);
+        List<List<Object>> table = new ArrayList<>();
+        for (int r = 0; r < rows; r++) {
+            table.add(trim(sheet.getOrDefault(r, new HashMap<>())));
+        }
+        return trimRows(table);
+    }
+
+    public static List<List<Object>> normalize(List<List<Object>> table) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (List<Object> row : table) {
+            Map<Integer, Object> cells = new HashMap<>();
+            for (int c = 0; c < row.size(); c++) {
+                cells.put(c, row.get(c));
+            }
+            rows.add(trim(cells));
+        }
+        return trimRows(rows);
+    }
+
+    private static List<Object> trim(Map<Integer, Object> cells) {
+        int cols = cells.entrySet().stream().filter(e -> !"".equals(e.getValue())).mapToInt(e -> e.getKey() + 1)
+                .max().orElse(0);
+        List<Object> row = new ArrayList<>();
+        for (int c = 0; c < cols; c++) {
+            row.add(cells.getOrDefault(c, ""));
+        }
+        return row;
+    }
+
+    private static List<List<Object>> trimRows(List<List<Object>> rows) {
+        while (!rows.isEmpty() && rows.get(rows.size() - 1).isEmpty()) {
+            rows.remove(rows.size() - 1);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,139 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled executor with a clock that only moves in advance(), which runs the
+ * tasks that become due on the calling thread, in order of their time. Use
+ * nanoTime() as the clock of whatever schedules on it.
+ */
+public class ManualScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        final long at;
+        final long seq;
+
+        Task(Callable<V> callable, long at, long seq) {
+            super(callable);
+            this.at = at;
+            this.seq = seq;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(at - nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private final PriorityQueue<Task<?>> tasks = new PriorityQueue<>(
+            Comparator.<Task<?>>comparingLong(t -> t.at).thenComparingLong(t -> t.seq));
+    private long now = 0;
+    private long seq = 0;
+    private boolean shutdown = false;
+
+    public synchronized long nanoTime() {
+        return now;
+    }
+
+    // Moves the clock forward, running every task that is due on the way
+    public void advance(long time, TimeUnit unit) {
+        long end;
+        synchronized (this) {
+            end = now + unit.toNanos(time);
+        }
+        while (true) {
+            Task<?> next;
+            synchronized (this) {
+                next = tasks.peek();
+                if (next == null || next.at > end) {
+                    now = end;
+                    return;
+                }
+                tasks.poll();
+                now = Math.max(now, next.at);
+            }
+            next.run();
+        }
+    }
+
+    // Scheduled tasks that are neither cancelled nor done
+    public synchronized int getPending() {
+        return (int) tasks.stream().filter(t -> !t.isDone()).count();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public synchronized <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Shut down");
+        }
+        Task<V> task = new Task<>(callable, now + Math.max(0, unit.toNanos(delay)), seq++);
+        tasks.add(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+            TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> left = new ArrayList<>(tasks);
+        tasks.clear();
+        return left;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && tasks.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+}
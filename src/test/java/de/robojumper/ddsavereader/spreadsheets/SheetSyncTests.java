@@ -0,0 +1,92 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonObject;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.TestProfiles;
+import de.robojumper.ddsavereader.model.SaveState;
+
+public class SheetSyncTests {
+
+    private static void assertSheets(LocalSheets sheets, SaveState.Snapshot s) {
+        assertEquals(sheets.getTable(SheetTables.ROSTER), LocalSheets.normalize(SheetTables.makeRosterTable(s)));
+        assertEquals(sheets.getTable(SheetTables.LOG), LocalSheets.normalize(SheetTables.makeLogTable(s)));
+        assertEquals(sheets.getTable(SheetTables.ESTATE), LocalSheets.normalize(SheetTables.makeEstateTable(s)));
+        assertEquals(sheets.getTable(SheetTables.PARTY), LocalSheets.normalize(SheetTables.makePartyTable(s)));
+        assertEquals(sheets.partySlots, SheetTables.getPartySlots(s));
+    }
+
+    @Test
+    public void testDiff() {
+        List<List<Object>> before = Arrays.asList(Arrays.asList("a", 1, "x"), Arrays.asList("b", 2),
+                Arrays.asList("c", 3), Arrays.asList("d", 4));
+        List<List<Object>> after = Arrays.asList(Arrays.asList("a", 1, "x"), Arrays.asList("b", 5),
+                Arrays.asList("c", 6, "y"), Arrays.asList("d", 4), Arrays.asList("e"));
+        assertTrue(TableDiff.diff("S", after, after).isEmpty());
+
+        List<CellRange> ranges = TableDiff.diff("S", before, after);
+        assertEquals(ranges.size(), 2);
+        assertEquals(ranges.get(0).toA1(), "S!B2:C3");
+        assertEquals(ranges.get(0).values, Arrays.asList(Arrays.asList(5, ""), Arrays.asList(6, "y")));
+        assertEquals(ranges.get(1).toA1(), "S!A5:A5");
+
+        // Removed cells are blanked
+        ranges = TableDiff.diff("S", after, before);
+        assertEquals(ranges.size(), 2);
+        assertEquals(ranges.get(1).values, Arrays.asList(Arrays.asList("")));
+
+        assertEquals(CellRange.columnName(0), "A");
+        assertEquals(CellRange.columnName(25), "Z");
+        assertEquals(CellRange.columnName(26), "AA");
+        assertEquals(CellRange.columnName(27 * 26), "AAA");
+    }
+
+    @Test
+    public void testSync() throws IOException, ParseException, InterruptedException {
+        Map<String, DsonFile> files = TestProfiles.load("profile1");
+        SaveState state = new SaveState();
+        state.updateFiles(files);
+
+        LocalSheets sheets = new LocalSheets();
+        SheetSync sync = new SheetSync(sheets);
+        assertTrue(sync.sync(state.snapshot()));
+        // Sheets, setup, party layout, values
+        assertEquals(sheets.requests, 4);
+        assertSheets(sheets, state.snapshot());
+
+        // Nothing changed, nothing sent
+        state.updateFiles(files);
+        assertFalse(sync.sync(state.snapshot()));
+        assertEquals(sheets.requests, 4);
+
+        // One hero gains some xp
+        JsonObject root = TestProfiles.toJson(files.get("persist.roster.json"));
+        TestProfiles.gainXp(root, 5);
+        files.put("persist.roster.json", TestProfiles.encode(root.toString()));
+        state.updateFiles(files);
+
+        int cells = sheets.cellsWritten;
+        assertTrue(sync.sync(state.snapshot()));
+        assertEquals(sheets.requests, 5);
+        // The timestamp, the hero's xp in the roster and maybe in the party
+        assertTrue(sheets.cellsWritten - cells <= 3, Integer.toString(sheets.cellsWritten - cells));
+        assertSheets(sheets, state.snapshot());
+
+        // A different save, everything from before is replaced
+        state.updateFiles(TestProfiles.load("modlimit"));
+        assertTrue(sync.sync(state.snapshot()));
+        assertSheets(sheets, state.snapshot());
+    }
+}
@@ -0,0 +1,155 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.model.SaveState;
+
+public class SyncSchedulerTests {
+
+    private ManualScheduledExecutor executor;
+    private SaveState state;
+    // Clock readings of the syncs, in ms
+    private List<Long> syncs;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new ManualScheduledExecutor();
+        state = new SaveState();
+        syncs = new ArrayList<>();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private SyncScheduler scheduler(Runnable sync, long delay, long minSpacing, long maxStaleness) {
+        return new SyncScheduler(state, sync, executor, executor::nanoTime, delay, minSpacing, maxStaleness,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void sync() {
+        syncs.add(TimeUnit.NANOSECONDS.toMillis(executor.nanoTime()));
+    }
+
+    private void save() {
+        state.update("persist.estate.json", "{\"base_root\":{}}");
+    }
+
+    private void advance(long ms) {
+        executor.advance(ms, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testCoalescing() {
+        SyncScheduler scheduler = scheduler(this::sync, 50, 100, 10000);
+        scheduler.start();
+        advance(0);
+        assertEquals(syncs, Arrays.asList(0L));
+
+        // A burst of saves is one sync, 50 ms after the last save but not
+        // sooner than 100 ms after the previous sync
+        for (int i = 0; i < 10; i++) {
+            save();
+            advance(5);
+        }
+        advance(49);
+        assertEquals(syncs, Arrays.asList(0L));
+        advance(1);
+        assertEquals(syncs, Arrays.asList(0L, 100L));
+
+        // Idle, nothing happens
+        advance(60000);
+        assertEquals(syncs, Arrays.asList(0L, 100L));
+        assertEquals(executor.getPending(), 0);
+
+        // A single save waits for the delay only
+        save();
+        advance(50);
+        assertEquals(syncs, Arrays.asList(0L, 100L, 60150L));
+
+        scheduler.stop();
+        save();
+        advance(60000);
+        assertEquals(syncs, Arrays.asList(0L, 100L, 60150L));
+        assertEquals(executor.getPending(), 0);
+    }
+
+    @Test
+    public void testStaleness() {
+        // Saves every 20 ms never leave 100 ms of quiet, but every 300 ms
+        // there has to be a sync
+        SyncScheduler scheduler = scheduler(this::sync, 100, 50, 300);
+        scheduler.start();
+        advance(0);
+        for (int i = 0; i < 50; i++) {
+            save();
+            advance(20);
+        }
+        scheduler.stop();
+        assertEquals(syncs, Arrays.asList(0L, 300L, 600L, 900L));
+    }
+
+    @Test
+    public void testSaveDuringSync() {
+        // A save while syncing doesn't start a second sync, the next one
+        // picks it up once the first one is done
+        int[] pendingAfterSave = { -1 };
+        SyncScheduler scheduler = scheduler(() -> {
+            sync();
+            if (syncs.size() == 1) {
+                save();
+                pendingAfterSave[0] = executor.getPending();
+            }
+        }, 50, 100, 10000);
+        scheduler.start();
+        advance(99);
+        assertEquals(syncs, Arrays.asList(0L));
+        assertEquals(pendingAfterSave[0], 0);
+        advance(1);
+        assertEquals(syncs, Arrays.asList(0L, 100L));
+        advance(60000);
+        assertEquals(syncs, Arrays.asList(0L, 100L));
+    }
+
+    @Test
+    public void testRetry() {
+        // A failed sync is retried after maxStaleness, even without saves
+        SyncScheduler scheduler = scheduler(() -> {
+            sync();
+            if (syncs.size() == 1) {
+                throw new IllegalStateException("Expected failure");
+            }
+        }, 50, 100, 1000);
+        scheduler.start();
+        advance(999);
+        assertEquals(syncs, Arrays.asList(0L));
+        advance(1);
+        assertEquals(syncs, Arrays.asList(0L, 1000L));
+        advance(60000);
+        assertEquals(syncs, Arrays.asList(0L, 1000L));
+        assertEquals(scheduler.getRuns(), 2);
+    }
+
+    @Test
+    public void testShutDownExecutor() {
+        SyncScheduler scheduler = scheduler(this::sync, 50, 100, 10000);
+        scheduler.start();
+        advance(0);
+        executor.shutdown();
+        // The save still goes through, the scheduler just stops
+        save();
+        assertEquals(state.getVersion(), 1);
+        advance(60000);
+        assertEquals(syncs, Arrays.asList(0L));
+    }
+}
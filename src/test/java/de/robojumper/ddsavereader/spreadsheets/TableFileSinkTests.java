@@ -0,0 +1,105 @@
+package de.robojumper.ddsavereader.spreadsheets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonFile.UnhashBehavior;
+import de.robojumper.ddsavereader.file.DsonWriter;
+import de.robojumper.ddsavereader.model.SaveState;
+
+public class TableFileSinkTests {
+
+    private Path dir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ddtables");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static List<String> lines(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEscape() {
+        assertEquals(TableFileSink.Format.CSV.escape("a, \"b\""), "\"a, \"\"b\"\"\"");
+        assertEquals(TableFileSink.Format.CSV.escape(12), "12");
+        assertEquals(TableFileSink.Format.TSV.escape("a\tb\nc"), "a b c");
+    }
+
+    @Test
+    public void testLog() throws IOException, ParseException, InterruptedException {
+        byte[] data = ByteStreams.toByteArray(
+                TableFileSinkTests.class.getClassLoader().getResourceAsStream("./modlimit/persist.campaign_log.json"));
+        DsonFile full = new DsonFile(data, UnhashBehavior.NONE);
+
+        // The same log a week earlier, without the last chapter
+        JsonObject root = JsonParser.parseString(full.toString()).getAsJsonObject();
+        JsonObject chapters = root.getAsJsonObject("base_root").getAsJsonObject("chapters");
+        String last = chapters.keySet().stream().max((a, b) -> Integer.parseInt(a) - Integer.parseInt(b)).get();
+        chapters.remove(last);
+        DsonFile earlier = new DsonFile(new DsonWriter(root.toString()).bytes(), UnhashBehavior.NONE);
+
+        SaveState state = new SaveState();
+        TableFileSink sink = new TableFileSink(dir, TableFileSink.Format.CSV);
+        Path log = sink.getFile(SheetTables.LOG);
+
+        state.updateFiles(Collections.singletonMap("persist.campaign_log.json", earlier));
+        sink.write(state.snapshot());
+        List<String> before = lines(log);
+        int written = sink.getFilesWritten();
+
+        // Unchanged, nothing written
+        state.updateFiles(Collections.singletonMap("persist.campaign_log.json", earlier));
+        sink.write(state.snapshot());
+        assertEquals(sink.getFilesWritten(), written);
+
+        // New week, appended
+        state.updateFiles(Collections.singletonMap("persist.campaign_log.json", full));
+        sink.write(state.snapshot());
+        assertEquals(sink.getFilesWritten(), written + 1);
+        List<String> after = lines(log);
+        assertEquals(after.subList(0, before.size()), before);
+        assertTrue(after.size() > before.size());
+        assertTrue(after.get(after.size() - 1).startsWith(last + ","));
+
+        // Same as writing everything at once
+        TableFileSink fresh = new TableFileSink(dir.resolve("fresh"), TableFileSink.Format.CSV);
+        fresh.write(state.snapshot());
+        assertEquals(lines(fresh.getFile(SheetTables.LOG)), after);
+
+        // Back to the earlier log, rewritten
+        state.updateFiles(Collections.singletonMap("persist.campaign_log.json", earlier));
+        sink.write(state.snapshot());
+        assertEquals(lines(log), before);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+}
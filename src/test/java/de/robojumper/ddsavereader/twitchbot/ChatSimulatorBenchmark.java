@@ -0,0 +1,147 @@
+package de.robojumper.ddsavereader.twitchbot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.TestProfiles;
+import de.robojumper.ddsavereader.model.Hero;
+import de.robojumper.ddsavereader.model.SaveState;
+import de.robojumper.ddsavereader.twitchbot.CommandExecutor.Result;
+
+/**
+ * Chat simulator for the {@link CommandExecutor}. Producer threads send a mix of
+ * commands from many users in several channels as fast as the executor takes
+ * them, while another thread keeps updating the save state like the watcher
+ * does. Rate limits are lifted, so this measures how many commands per second
+ * the executor sustains, and the latency from submitting a command to its
+ * reply.
+ *
+ * gradle bench -Pbench=de.robojumper.ddsavereader.twitchbot.ChatSimulatorBenchmark
+ * -PbenchArgs="seconds producers updateMs"
+ */
+public class ChatSimulatorBenchmark {
+
+    // Latencies in microseconds, the last bucket counts everything above
+    private static final int BUCKETS = 100_000;
+    private static final AtomicLongArray latencies = new AtomicLongArray(BUCKETS + 1);
+    private static final AtomicLong replies = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 10;
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        long updateMs = args.length > 2 ? Long.parseLong(args[2]) : 500;
+
+        Map<String, DsonFile> files = TestProfiles.load("profile1");
+        SaveState state = new SaveState();
+        state.updateFiles(files);
+        List<String> commands = makeCommands(state);
+
+        CommandExecutor.Limits limits = new CommandExecutor.Limits();
+        limits.userRate = limits.channelRate = 1e9;
+        limits.userBurst = limits.channelBurst = 1e9;
+        System.out.println(String.format("%d threads, %d producers, %d commands, update every %d ms",
+                limits.threads, producers, commands.size(), updateMs));
+
+        try (CommandExecutor executor = new CommandExecutor(state, limits)) {
+            // Warm up for a third of the time, then measure
+            run(executor, state, files, commands, producers, updateMs, seconds / 3);
+            for (int i = 0; i <= BUCKETS; i++) {
+                latencies.set(i, 0);
+            }
+            replies.set(0);
+            long executedBefore = executor.getExecuted();
+            long rejectedBefore = executor.getRejected();
+
+            long start = System.nanoTime();
+            long updates = run(executor, state, files, commands, producers, updateMs, seconds);
+            double took = (System.nanoTime() - start) / 1e9;
+
+            long executed = executor.getExecuted() - executedBefore;
+            System.out.println(String.format("%d commands in %.2fs: %.0f commands/s, %d rejected, %d updates",
+                    executed, took, executed / took, executor.getRejected() - rejectedBefore, updates));
+            System.out.println(String.format("Latency p50 %d us, p99 %d us, p99.9 %d us", percentile(0.5),
+                    percentile(0.99), percentile(0.999)));
+        }
+    }
+
+    private static long run(CommandExecutor executor, SaveState state, Map<String, DsonFile> files,
+            List<String> commands, int producers, long updateMs, double seconds) throws InterruptedException {
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Random r = new Random(p);
+            threads.add(new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    String channel = "channel" + r.nextInt(8);
+                    String user = "user" + r.nextInt(10000);
+                    String command = commands.get(r.nextInt(commands.size()));
+                    long sent = System.nanoTime();
+                    if (executor.submit(channel, user, command, response -> record(sent)) == Result.REJECTED) {
+                        // Queue full, give the pool a moment like a real chat would
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        long[] updates = new long[1];
+        threads.add(new Thread(() -> {
+            while (System.nanoTime() < end) {
+                try {
+                    Thread.sleep(updateMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                state.updateFiles(files);
+                updates[0]++;
+            }
+        }));
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return updates[0];
+    }
+
+    private static void record(long sent) {
+        long us = (System.nanoTime() - sent) / 1000;
+        latencies.incrementAndGet((int) Math.min(us, BUCKETS));
+        replies.incrementAndGet();
+    }
+
+    private static long percentile(double p) {
+        long target = (long) Math.ceil(replies.get() * p);
+        long seen = 0;
+        for (int i = 0; i <= BUCKETS; i++) {
+            seen += latencies.get(i);
+            if (seen >= target) {
+                return i;
+            }
+        }
+        return BUCKETS;
+    }
+
+    // Mostly the same few commands, like a chat reacting to the stream
+    private static List<String> makeCommands(SaveState state) {
+        List<String> commands = new ArrayList<>();
+        for (Hero h : state.getRoster().getHeroes()) {
+            String name = h.getName();
+            commands.add("!ddstatus " + name);
+            commands.add("!ddkills " + name);
+            commands.add("!ddquirks " + name.substring(0, name.length() - 1));
+        }
+        int heroCommands = commands.size();
+        for (int i = 0; i < heroCommands / 2; i++) {
+            commands.add("!ddweek");
+            commands.add("!ddresources");
+            commands.add("!ddresource gold");
+        }
+        return commands;
+    }
+}
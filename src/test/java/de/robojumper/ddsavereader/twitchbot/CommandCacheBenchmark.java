@@ -0,0 +1,71 @@
+package de.robojumper.ddsavereader.twitchbot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.TestProfiles;
+import de.robojumper.ddsavereader.model.Hero;
+import de.robojumper.ddsavereader.model.SaveState;
+
+/**
+ * Cost of a chat command in {@link Commands#buildResponse}, once repeated
+ * within the same save state version (answered from the response cache) and
+ * once as the first command after an update (built from the new snapshot,
+ * including binding the files it needs). The update itself is not measured.
+ *
+ * gradle bench -Pbench=de.robojumper.ddsavereader.twitchbot.CommandCacheBenchmark
+ * -PbenchArgs="rounds repeats"
+ */
+public class CommandCacheBenchmark {
+
+    private static int sink;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        Map<String, DsonFile> files = TestProfiles.load("profile1");
+        SaveState state = new SaveState();
+        state.updateFiles(files);
+        List<String> commands = new ArrayList<>();
+        for (Hero h : state.getRoster().getHeroes()) {
+            commands.add("!ddstatus " + h.getName());
+            commands.add("!ddkills " + h.getName());
+        }
+        commands.add("!ddresources");
+        commands.add("!ddweek");
+        commands.add("!dddistricts");
+        System.out.println(String.format("%d commands, %d rounds, %d repeats", commands.size(), rounds, repeats));
+
+        long first = 0;
+        long repeated = 0;
+        for (int round = 0; round < rounds; round++) {
+            state.updateFiles(files);
+            long start = System.nanoTime();
+            for (String c : commands) {
+                sink += length(Commands.buildResponse(state, c));
+            }
+            long afterFirst = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                for (String c : commands) {
+                    sink += length(Commands.buildResponse(state, c));
+                }
+            }
+            long end = System.nanoTime();
+            // The first half of the rounds is warm up
+            if (round >= rounds / 2) {
+                first += afterFirst - start;
+                repeated += end - afterFirst;
+            }
+        }
+        long measured = (long) (rounds - rounds / 2) * commands.size();
+        System.out.println(String.format("first after update %8.2f us/command", first / 1e3 / measured));
+        System.out.println(String.format("repeated           %8.2f us/command", repeated / 1e3 / measured / repeats));
+    }
+
+    private static int length(String s) {
+        return s != null ? s.length() : 0;
+    }
+}
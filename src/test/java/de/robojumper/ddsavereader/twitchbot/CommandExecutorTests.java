@@ -0,0 +1,139 @@
+package de.robojumper.ddsavereader.twitchbot;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.model.SaveState;
+import de.robojumper.ddsavereader.twitchbot.CommandExecutor.Result;
+
+public class CommandExecutorTests {
+
+    @Test
+    public void testTokenBucket() {
+        TokenBucket b = new TokenBucket(2, 3, 0);
+        assertTrue(b.tryAcquire(0));
+        assertTrue(b.tryAcquire(0));
+        assertTrue(b.tryAcquire(0));
+        assertFalse(b.tryAcquire(0));
+        // Two tokens per second
+        assertFalse(b.tryAcquire(400_000_000L));
+        assertTrue(b.tryAcquire(500_000_000L));
+        assertFalse(b.isFull(500_000_000L));
+        assertTrue(b.isFull(10_000_000_000L));
+    }
+
+    @Test
+    public void testLimits() throws InterruptedException {
+        CommandExecutor.Limits limits = new CommandExecutor.Limits();
+        limits.userRate = 0.001;
+        limits.userBurst = 2;
+        limits.channelRate = 0.001;
+        limits.channelBurst = 3;
+        List<String> replies = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        try (CommandExecutor executor = new CommandExecutor(new SaveState(), limits)) {
+            assertEquals(executor.submit("a", "alice", "hello", replies::add), Result.IGNORED);
+            assertEquals(executor.submit("a", "alice", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertEquals(executor.submit("a", "alice", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertEquals(executor.submit("a", "alice", "!ddweek", replies::add), Result.USER_LIMITED);
+            assertEquals(executor.submit("a", "bob", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertEquals(executor.submit("a", "carol", "!ddweek", replies::add), Result.CHANNEL_LIMITED);
+            assertEquals(executor.submit("b", "carol", "!ddweek", replies::add), Result.QUEUED);
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(executor.getLimited(), 2);
+        }
+        assertEquals(replies.size(), 1);
+    }
+
+    // Limits with one thread and no refills
+    private static CommandExecutor.Limits blockingLimits() {
+        CommandExecutor.Limits limits = new CommandExecutor.Limits();
+        limits.threads = 1;
+        limits.userRate = 0.001;
+        limits.userBurst = 1;
+        limits.channelRate = 0.001;
+        limits.channelBurst = 100;
+        return limits;
+    }
+
+    // Occupies the pool's only thread until the returned latch is released
+    private static CountDownLatch block(CommandExecutor executor) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertEquals(executor.submit("blocker", "blocker", "!ddweek", r -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+            }
+        }), Result.QUEUED);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    public void testQueueFull() throws InterruptedException {
+        CommandExecutor.Limits limits = blockingLimits();
+        limits.queueSize = 1;
+        CountDownLatch done = new CountDownLatch(2);
+        try (CommandExecutor executor = new CommandExecutor(new SaveState(), limits)) {
+            CountDownLatch release = block(executor);
+            assertEquals(executor.submit("a", "alice", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertEquals(executor.submit("a", "bob", "!ddweek", r -> done.countDown()), Result.REJECTED);
+            assertEquals(executor.getRejected(), 1);
+            release.countDown();
+            // Bob's only token was given back
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            Result r;
+            while ((r = executor.submit("a", "bob", "!ddweek", x -> done.countDown())) == Result.REJECTED
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(r, Result.QUEUED);
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testMaxPendingPerChannel() throws InterruptedException {
+        CommandExecutor.Limits limits = blockingLimits();
+        limits.maxPendingPerChannel = 2;
+        CountDownLatch done = new CountDownLatch(4);
+        try (CommandExecutor executor = new CommandExecutor(new SaveState(), limits)) {
+            CountDownLatch release = block(executor);
+            assertEquals(executor.submit("a", "alice", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertEquals(executor.submit("a", "bob", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertEquals(executor.submit("a", "carol", "!ddweek", r -> done.countDown()), Result.REJECTED);
+            assertEquals(executor.getRejected(), 1);
+            // Other channels still have room, and carol still has her token
+            assertEquals(executor.submit("b", "carol", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertEquals(executor.submit("b", "dave", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testChannelLimitKeepsUserToken() throws InterruptedException {
+        CommandExecutor.Limits limits = blockingLimits();
+        limits.channelBurst = 1;
+        CountDownLatch done = new CountDownLatch(3);
+        try (CommandExecutor executor = new CommandExecutor(new SaveState(), limits)) {
+            assertEquals(executor.submit("a", "alice", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertEquals(executor.submit("a", "bob", "!ddweek", r -> done.countDown()), Result.CHANNEL_LIMITED);
+            assertEquals(executor.submit("b", "bob", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            // A user limited command doesn't use up the channel's token
+            assertEquals(executor.submit("c", "alice", "!ddweek", r -> done.countDown()), Result.USER_LIMITED);
+            assertEquals(executor.submit("c", "carol", "!ddweek", r -> done.countDown()), Result.QUEUED);
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
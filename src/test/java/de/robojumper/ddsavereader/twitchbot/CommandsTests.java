@@ -0,0 +1,84 @@
+package de.robojumper.ddsavereader.twitchbot;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.file.TestProfiles;
+import de.robojumper.ddsavereader.model.SaveState;
+
+public class CommandsTests {
+
+    private static void update(SaveState state, String profile) throws IOException, ParseException {
+        state.updateFiles(TestProfiles.load(profile, "persist.estate.json"));
+    }
+
+    @Test
+    public void testCache() throws IOException, ParseException {
+        SaveState state = new SaveState();
+        update(state, "profile1");
+        String first = Commands.buildResponse(state, "!ddresources");
+        assertNotNull(first);
+        // Built once per version, also with different whitespace
+        assertSame(Commands.buildResponse(state, "!ddresources"), first);
+        assertSame(Commands.buildResponse(state, "!ddresources   "), first);
+
+        // A new version builds again
+        update(state, "profileSwitch");
+        String second = Commands.buildResponse(state, "!ddresources");
+        assertNotSame(second, first);
+        assertFalse(second.equals(first));
+        assertSame(Commands.buildResponse(state, "!ddresources"), second);
+
+        // Other save states have caches of their own
+        SaveState other = new SaveState();
+        update(other, "profile1");
+        String otherFirst = Commands.buildResponse(other, "!ddresources");
+        assertEquals(otherFirst, first);
+        assertSame(Commands.buildResponse(state, "!ddresources"), second);
+    }
+
+    @Test
+    public void testStaleSnapshot() throws IOException, ParseException {
+        SaveState state = new SaveState();
+        update(state, "profile1");
+        SaveState.Snapshot old = state.snapshot();
+        update(state, "profileSwitch");
+        Commands.ResponseCache current = Commands.cacheFor(state, state.snapshot());
+
+        // A thread that still has the old snapshot doesn't replace the newer cache
+        Commands.ResponseCache stale = Commands.cacheFor(state, old);
+        assertSame(stale.snapshot, old);
+        assertNotSame(stale, current);
+        assertSame(Commands.cacheFor(state, state.snapshot()), current);
+    }
+
+    @Test
+    public void testFullCache() throws IOException, ParseException {
+        SaveState state = new SaveState();
+        update(state, "profile1");
+        Commands.ResponseCache cache = Commands.cacheFor(state, state.snapshot());
+        Commands.buildResponse(state, "!ddresource gold");
+        for (int i = 1; i < Commands.MAX_CACHED_RESPONSES; i++) {
+            Commands.buildResponse(state, "!ddresource spam" + i);
+        }
+        assertEquals(cache.responses.size(), Commands.MAX_CACHED_RESPONSES);
+
+        // Still cached when full, the least recently used one makes room
+        Commands.buildResponse(state, "!ddresource gold");
+        Commands.buildResponse(state, "!ddresource new");
+        assertEquals(cache.responses.size(), Commands.MAX_CACHED_RESPONSES);
+        assertTrue(cache.responses.containsKey("resource new"));
+        assertTrue(cache.responses.containsKey("resource gold"));
+        assertFalse(cache.responses.containsKey("resource spam1"));
+        assertTrue(cache.responses.containsKey("resource spam2"));
+    }
+}
@@ -0,0 +1,153 @@
+package de.robojumper.ddsavereader.util;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.function.Function;
+
+import de.robojumper.ddsavereader.util.ReadNames.Parser;
+
+/**
+ * Compares finding the parsers for a file in {@link ReadNames} with one
+ * endsWith per parser (how it used to be done) to the {@link SuffixTrie}
+ * lookup. Runs over a synthetic game
+ * install with the given number of files, mostly art and sound like the real
+ * one, with paths that are built fresh every round like the walk does.
+ * If a directory is given, the tree is also created there (if it doesn't exist
+ * yet) and walked with either dispatch, without parsing anything.
+ *
+ * gradle bench -Pbench=de.robojumper.ddsavereader.util.ParserDispatchBenchmark
+ * -PbenchArgs="files rounds [treeDir]"
+ */
+public class ParserDispatchBenchmark {
+
+    // Roughly the mix of a game install with a few mods
+    private static final String[] EXTENSIONS = { ".png", ".png", ".png", ".png", ".sprite.atlas", ".sprite.skel",
+            ".wav", ".bank", ".txt", ".xml", ".string_table.xml", ".info.darkest", ".upgrades.json",
+            ".art.darkest", ".fx.darkest", ".dungeon.json", ".events.json", ".trinkets.json", ".layout.darkest",
+            ".camping_skills.json", ".inventory.items.darkest", ".building.json", ".types.json" };
+    private static final String[] DIRS = { "heroes", "monsters", "dungeons", "fx", "audio", "scrolls", "raid",
+            "campaign", "inventory", "trinkets", "upgrades", "localization", "shared", "panels", "fe_flow" };
+
+    private static int sink;
+
+    public static void main(String[] args) throws IOException {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path treeDir = args.length > 2 ? Paths.get(args[2]) : null;
+
+        Path root = Paths.get("/games/DarkestDungeon");
+        Path[] dirs = new Path[files];
+        String[] names = new String[files];
+        int[] added = { 0 };
+        makeTree(files, (dir, name) -> {
+            dirs[added[0]] = root.resolve(dir);
+            names[added[0]++] = name;
+        });
+
+        System.out.println(String.format("%d files, %d parser suffixes", files, ReadNames.PARSERS.size()));
+        for (int round = 0; round < rounds; round++) {
+            // The first half of the rounds is warm up
+            boolean print = round >= rounds / 2;
+            measure("endsWith", dirs, names, ParserDispatchBenchmark::linear, print);
+            measure("trie", dirs, names, ReadNames::getParsers, print);
+        }
+
+        if (treeDir != null) {
+            if (!Files.isDirectory(treeDir)) {
+                System.out.println("Creating " + files + " files in " + treeDir);
+                makeTree(files, (dir, name) -> {
+                    try {
+                        Path d = treeDir.resolve(dir);
+                        Files.createDirectories(d);
+                        Files.createFile(d.resolve(name));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+            for (int round = 0; round < Math.max(2, rounds / 2); round++) {
+                boolean print = round > 0;
+                walk("walk endsWith", treeDir, ParserDispatchBenchmark::linear, print);
+                walk("walk trie", treeDir, ReadNames::getParsers, print);
+            }
+        }
+    }
+
+    private interface TreeBuilder {
+        void add(String dir, String name);
+    }
+
+    // Directories of up to 100 files, a few levels deep, in the same order every time
+    private static void makeTree(int files, TreeBuilder builder) {
+        Random random = new Random(17);
+        String dir = "";
+        for (int i = 0; i < files; i++) {
+            if (i % 100 == 0) {
+                dir = (i % 3000 < 1000 ? "" : "mods/" + (i / 3000) + "/") + DIRS[random.nextInt(DIRS.length)] + "/"
+                        + DIRS[random.nextInt(DIRS.length)] + "_" + (i / 100);
+            }
+            String extension = EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+            builder.add(dir, DIRS[random.nextInt(DIRS.length)] + "_" + i + extension);
+        }
+    }
+
+    // What ReadNames.collectNames did before the trie
+    private static List<Entry<String, List<Parser>>> linear(Path file) {
+        String filename = file.toString();
+        List<Entry<String, List<Parser>>> parsers = new ArrayList<>(1);
+        for (Entry<String, List<Parser>> entry : ReadNames.PARSERS.entrySet()) {
+            if (filename.endsWith(entry.getKey())) {
+                parsers.add(entry);
+            }
+        }
+        return parsers;
+    }
+
+    private static void measure(String name, Path[] dirs, String[] names,
+            Function<Path, List<Entry<String, List<Parser>>>> dispatch, boolean print) {
+        // Fresh paths, so neither side gets a cached toString
+        Path[] paths = new Path[dirs.length];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = dirs[i].resolve(names[i]);
+        }
+        long start = System.nanoTime();
+        int matched = 0;
+        for (Path p : paths) {
+            matched += dispatch.apply(p).size();
+        }
+        long took = System.nanoTime() - start;
+        sink += matched;
+        if (print) {
+            System.out.println(String.format("%-14s %7.1f ms, %5.0f ns/file, %.2fM files/s, %d matches", name,
+                    took / 1e6, (double) took / paths.length, paths.length / (took / 1e3), matched));
+        }
+    }
+
+    private static void walk(String name, Path dir, Function<Path, List<Entry<String, List<Parser>>>> dispatch,
+            boolean print) throws IOException {
+        int[] counts = new int[2];
+        long start = System.nanoTime();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                counts[0]++;
+                counts[1] += dispatch.apply(file).size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        long took = System.nanoTime() - start;
+        if (print) {
+            System.out.println(String.format("%-14s %7.1f ms, %5.0f ns/file, %.2fM files/s, %d matches", name,
+                    took / 1e6, (double) took / counts[0], counts[0] / (took / 1e3), counts[1]));
+        }
+    }
+}
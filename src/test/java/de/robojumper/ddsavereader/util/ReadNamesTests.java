@@ -0,0 +1,145 @@
+package de.robojumper.ddsavereader.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.util.ReadNames.Parser;
+
+public class ReadNamesTests {
+
+    private Path dir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ddnames");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path p = dir.resolve(file);
+        Files.createDirectories(p.getParent());
+        Files.write(p, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // A tiny game install, plus the names it should produce
+    private Set<String> makeGame() throws IOException {
+        write("heroes/crusader/crusader.info.darkest", "hero:");
+        write("upgrades/heroes/crusader.upgrades.json",
+                "{\"trees\": [{\"id\": \"crusader.smite\"}, {\"id\": \"crusader.weapon\"}]}");
+        write("shared/quirk/quirk_library.json", "{\"quirks\": [{\"id\": \"accurate\"}, {\"id\": \"dud_hitter\"}]}");
+        write("inventory/default.inventory.items.darkest",
+                "inventory_item: .type \"heirloom\" .id \"portrait\" .base_stack_limit 3\n");
+        write("scrolls/tutorial_popup.torch.png", "");
+        write("raid/curio_props.csv", "altar,1,2\n,3,4\n");
+        write("readme.txt", "not a game file");
+        return new HashSet<>(Arrays.asList("crusader", "crusader.smite", "smite", "crusader.weapon", "weapon",
+                "accurate", "dud_hitter", "heirloom", "portrait", "torch", "altar"));
+    }
+
+    @Test
+    public void testCollectNames() throws IOException {
+        Set<String> expected = makeGame();
+        for (int threads : new int[] { 1, 4 }) {
+            AtomicInteger lastParsed = new AtomicInteger();
+            Map<String, ReadNames.ParserTiming> timings = new ConcurrentHashMap<>();
+            Set<String> names = ReadNames.collectNames(Collections.singletonList(dir.toString()), threads,
+                    (parsed, found) -> lastParsed.accumulateAndGet(parsed, Math::max), timings, null);
+            assertEquals(names, expected);
+            assertEquals(lastParsed.get(), 6);
+            assertEquals(timings.values().stream().mapToLong(t -> t.files.sum()).sum(), 6);
+            assertTrue(timings.containsKey(".upgrades.json"));
+        }
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        Set<String> expected = makeGame();
+        Path cacheFile = dir.resolve("cache/names.cache");
+        List<String> roots = Collections.singletonList(dir.toString());
+
+        NameCache cache = NameCache.load(cacheFile, "parsers");
+        assertEquals(ReadNames.collectNames(roots, 2, null, null, cache), expected);
+        cache.save(cacheFile);
+
+        // One mod changed a file, another one was removed
+        write("upgrades/heroes/crusader.upgrades.json", "{\"trees\": [{\"id\": \"crusader.smite\"}]}");
+        Files.delete(dir.resolve("shared/quirk/quirk_library.json"));
+        expected.removeAll(Arrays.asList("crusader.weapon", "weapon", "accurate", "dud_hitter"));
+
+        Map<String, ReadNames.ParserTiming> timings = new ConcurrentHashMap<>();
+        cache = NameCache.load(cacheFile, "parsers");
+        assertEquals(cache.size(), 6);
+        assertEquals(ReadNames.collectNames(roots, 2, null, timings, cache), expected);
+        // Only the changed file was parsed
+        assertEquals(timings.keySet(), Collections.singleton(".upgrades.json"));
+        cache.save(cacheFile);
+        assertEquals(NameCache.load(cacheFile, "parsers").size(), 5);
+
+        // Different parsers, nothing cached
+        assertEquals(NameCache.load(cacheFile, "other parsers").size(), 0);
+    }
+
+    @Test
+    public void testSuffixTrie() {
+        Map<String, String> keys = new HashMap<>();
+        for (String k : new String[] { ".json", "s.json", ".events.json", "quest.plot_quests.json", ".png" }) {
+            keys.put(k, k);
+        }
+        SuffixTrie<String> trie = new SuffixTrie<>(keys);
+        assertEquals(trie.match("town.events.json"), Arrays.asList(".json", "s.json", ".events.json"));
+        assertEquals(trie.match("quest.plot_quests.json"), Arrays.asList(".json", "s.json", "quest.plot_quests.json"));
+        assertEquals(trie.match("plot_quests.json"), Arrays.asList(".json", "s.json"));
+        assertEquals(trie.match("a.png"), Arrays.asList(".png"));
+        assertEquals(trie.match("png"), Collections.emptyList());
+        assertEquals(trie.match(""), Collections.emptyList());
+        assertEquals(new SuffixTrie<String>(Collections.singletonMap("", "all")).match("x"), Arrays.asList("all"));
+    }
+
+    @Test
+    public void testDispatch() {
+        for (String file : new String[] { "dlc/heroes/crusader/crusader.info.darkest",
+                "campaign/quest/quest.plot_quests.json", "shared/quirk/quirk_library.json",
+                "inventory/default.inventory.system_configs.darkest", "scrolls/tutorial_popup.torch.png",
+                "raid/curio_props.csv", "readme.txt", "plot_quests.json", ".png" }) {
+            Path path = Paths.get(file);
+            Set<Entry<String, List<Parser>>> expected = new HashSet<>();
+            for (Entry<String, List<Parser>> entry : ReadNames.PARSERS.entrySet()) {
+                if (path.toString().endsWith(entry.getKey())) {
+                    expected.add(entry);
+                }
+            }
+            List<Entry<String, List<Parser>>> parsers = new ArrayList<>(ReadNames.getParsers(path));
+            assertEquals(new HashSet<>(parsers), expected, file);
+            assertEquals(parsers.size(), expected.size(), file);
+        }
+    }
+}
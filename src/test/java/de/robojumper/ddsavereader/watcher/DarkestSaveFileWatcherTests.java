@@ -0,0 +1,336 @@
+package de.robojumper.ddsavereader.watcher;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.file.DsonFile;
+import de.robojumper.ddsavereader.file.DsonWriter;
+import de.robojumper.ddsavereader.model.SaveState;
+
+/**
+ * Runs watchers against a temporary directory, either with the native backend
+ * or with events sent by the test.
+ */
+public class DarkestSaveFileWatcherTests {
+
+    private Path dir;
+    private DarkestSaveFileWatcher watcher;
+
+    // Only reports the events the test sends
+    private static class ManualWatchBackend implements WatchBackend {
+        private final CountDownLatch running = new CountDownLatch(1);
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private volatile Listener listener;
+
+        @Override
+        public void open(Path root) {
+        }
+
+        @Override
+        public void run(Listener listener) {
+            this.listener = listener;
+            running.countDown();
+            try {
+                stopped.await();
+            } catch (InterruptedException e) {
+            }
+        }
+
+        @Override
+        public void stop() {
+            stopped.countDown();
+        }
+
+        // Waits until the watcher has read the existing files and listens
+        Listener listener() throws InterruptedException {
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+            return listener;
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ddsavewatch");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // Copies a save file from the test resources
+    private void copy(String resource, String file) throws IOException {
+        Path p = dir.resolve(file);
+        Files.createDirectories(p.getParent());
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("./" + resource)) {
+            Files.copy(in, p);
+        }
+    }
+
+    private static void write(Path file, String json) throws IOException {
+        try {
+            Files.write(file, new DsonWriter(json).bytes());
+        } catch (ParseException | InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    // Applies every save to the state, like the spreadsheet updater does
+    private static void applyTo(DarkestSaveFileWatcher watcher, SaveState state) {
+        watcher.setBatchListener(files -> {
+            Map<String, DsonFile> data = new LinkedHashMap<>();
+            files.forEach((name, result) -> {
+                if (!result.encounteredError) {
+                    data.put(name, result.file);
+                }
+            });
+            state.updateFiles(data);
+        });
+    }
+
+    @Test
+    public void testProfiles() throws IOException, InterruptedException {
+        copy("profile1/persist.roster.json", "profile_0/persist.roster.json");
+        SaveState state = new SaveState();
+        watcher = new DarkestSaveFileWatcher(null, dir.toString(), 10);
+        applyTo(watcher, state);
+        watcher.watchSaveFiles();
+        await(() -> state.getProfiles().contains("profile_0"));
+
+        // A profile created while watching
+        copy("modlimit/persist.roster.json", "profile_1/persist.roster.json");
+        await(() -> state.getProfiles().contains("profile_1"));
+
+        assertEquals(state.getProfiles(), new HashSet<>(Arrays.asList("profile_0", "profile_1")));
+        SaveState.Snapshot first = state.snapshot("profile_0");
+        SaveState.Snapshot second = state.snapshot("profile_1");
+        assertTrue(first.getRoster().getHeroes().size() > 0);
+        assertTrue(second.getRoster().getHeroes().size() > 0);
+        assertTrue(first.getRoster().getHeroes().size() != second.getRoster().getHeroes().size());
+        // The profile saved last is the current one
+        assertEquals(state.snapshot().profile, "profile_1");
+        assertEquals(state.snapshot().version, state.getVersion());
+    }
+
+    @Test
+    public void testStopBeforeOpen() {
+        new NativeWatchBackend().stop();
+    }
+
+    @Test
+    public void testBurst() throws IOException, InterruptedException {
+        BlockingQueue<String> reads = new LinkedBlockingQueue<>();
+        ManualWatchBackend backend = new ManualWatchBackend();
+        watcher = new DarkestSaveFileWatcher((name, result) -> reads.add(name), dir.toString(), 100, backend);
+        watcher.watchSaveFiles();
+        WatchBackend.Listener listener = backend.listener();
+
+        // The game writes the same file many times while saving
+        Path roster = dir.resolve("persist.roster.json");
+        for (int i = 0; i < 20; i++) {
+            write(roster, "{\"base_root\": {\"a\": " + i + "}}");
+            listener.fileChanged(roster);
+        }
+        assertEquals(reads.poll(5, TimeUnit.SECONDS), "persist.roster.json");
+        // Nothing more after several quiet periods
+        assertEquals(reads.poll(500, TimeUnit.MILLISECONDS), null);
+        assertEquals(watcher.getCoalescedEvents(), 19);
+    }
+
+    @Test
+    public void testChangeListener() throws IOException, InterruptedException {
+        Path roster = dir.resolve("persist.roster.json");
+        write(roster, "{\"base_root\": {\"gold\": 100, \"name\": \"Reynauld\", \"trinkets\": {\"a\": 1}}}");
+        BlockingQueue<String> reads = new LinkedBlockingQueue<>();
+        BlockingQueue<List<String>> changes = new LinkedBlockingQueue<>();
+        ManualWatchBackend backend = new ManualWatchBackend();
+        watcher = new DarkestSaveFileWatcher((name, result) -> reads.add(name), dir.toString(), 10, backend);
+        watcher.setChangeListener((name, list) -> {
+            assertEquals(name, "persist.roster.json");
+            changes.add(list.stream().map(Object::toString).collect(Collectors.toList()));
+        });
+        watcher.watchSaveFiles();
+        WatchBackend.Listener listener = backend.listener();
+        // The first version has nothing to compare to
+        assertEquals(reads.poll(5, TimeUnit.SECONDS), "persist.roster.json");
+
+        write(roster, "{\"base_root\": {\"gold\": 250, \"name\": \"Reynauld\", \"trinkets\": {\"b\": 2}}}");
+        listener.fileChanged(roster);
+        assertEquals(changes.poll(5, TimeUnit.SECONDS), Arrays.asList("~ base_root/gold: 100 -> 250",
+                "- base_root/trinkets/a: 1", "+ base_root/trinkets/b: 2"));
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void testRescan() throws IOException, InterruptedException {
+        Path changed = dir.resolve("persist.roster.json");
+        Path touched = dir.resolve("persist.town.json");
+        Path same = dir.resolve("persist.estate.json");
+        write(changed, "{\"base_root\": {\"a\": 1}}");
+        write(touched, "{\"base_root\": {\"b\": 2}}");
+        write(same, "{\"base_root\": {\"c\": 3}}");
+        List<String> reads = Collections.synchronizedList(new ArrayList<>());
+        BlockingQueue<Set<String>> batches = new LinkedBlockingQueue<>();
+        ManualWatchBackend backend = new ManualWatchBackend();
+        watcher = new DarkestSaveFileWatcher((name, result) -> reads.add(name), dir.toString(), 50, backend);
+        watcher.setBatchListener(files -> batches.add(files.keySet()));
+        watcher.watchSaveFiles();
+        backend.listener();
+        // All three were read at start, possibly in more than one batch
+        for (int files = 0; files < 3;) {
+            files += batches.poll(5, TimeUnit.SECONDS).size();
+        }
+        reads.clear();
+
+        // Events for these were lost
+        write(changed, "{\"base_root\": {\"a\": 1, \"d\": 4}}");
+        Files.setLastModifiedTime(touched, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        long skipped = watcher.getSkippedParses();
+        watcher.rescan();
+
+        // Both are read in the same burst. Only the changed one is parsed, the
+        // unchanged one is not even read.
+        assertEquals(batches.poll(5, TimeUnit.SECONDS), Collections.singleton("persist.roster.json"));
+        assertEquals(reads, Arrays.asList("persist.roster.json"));
+        assertEquals(watcher.getSkippedParses(), skipped + 1);
+    }
+
+    @Test
+    public void testBatches() throws IOException, InterruptedException {
+        String[] files = { "persist.roster.json", "persist.estate.json", "persist.town.json" };
+        for (String f : files) {
+            copy("profile1/" + f, f);
+        }
+        SaveState state = new SaveState();
+        BlockingQueue<Set<String>> batches = new LinkedBlockingQueue<>();
+        ManualWatchBackend backend = new ManualWatchBackend();
+        watcher = new DarkestSaveFileWatcher(null, dir.toString(), 50, backend);
+        watcher.setBatchListener(f -> {
+            Map<String, DsonFile> data = new LinkedHashMap<>();
+            f.forEach((name, result) -> data.put(name, result.file));
+            state.updateFiles(data);
+            batches.add(f.keySet());
+        });
+        watcher.watchSaveFiles();
+        WatchBackend.Listener listener = backend.listener();
+
+        // The files that exist at start are one batch
+        assertEquals(batches.poll(5, TimeUnit.SECONDS), new HashSet<>(Arrays.asList(files)));
+        assertEquals(state.getVersion(), 1);
+
+        // One save writes all files
+        for (String f : files) {
+            Files.delete(dir.resolve(f));
+            copy("profileSwitch/" + f, f);
+            listener.fileChanged(dir.resolve(f));
+        }
+        assertEquals(batches.poll(5, TimeUnit.SECONDS), new HashSet<>(Arrays.asList(files)));
+        assertEquals(batches.poll(200, TimeUnit.MILLISECONDS), null);
+        assertEquals(state.getVersion(), 2);
+    }
+
+    @Test
+    public void testFailingBatchListener() throws IOException, InterruptedException {
+        Path file = dir.resolve("persist.estate.json");
+        write(file, "{\"base_root\": {\"gold\": 1}}");
+        BlockingQueue<Set<String>> batches = new LinkedBlockingQueue<>();
+        CountDownLatch inFirstBatch = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        ManualWatchBackend backend = new ManualWatchBackend();
+        watcher = new DarkestSaveFileWatcher(null, dir.toString(), 50, backend);
+        watcher.setBatchListener(f -> {
+            batches.add(f.keySet());
+            if (batches.size() == 1) {
+                inFirstBatch.countDown();
+                try {
+                    changed.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                }
+                throw new IllegalStateException("Expected failure");
+            }
+        });
+        watcher.watchSaveFiles();
+        WatchBackend.Listener listener = backend.listener();
+        assertTrue(inFirstBatch.await(5, TimeUnit.SECONDS));
+
+        // The next read of the file is queued behind the failing one
+        write(file, "{\"base_root\": {\"gold\": 2}}");
+        listener.fileChanged(file);
+        Thread.sleep(300);
+        changed.countDown();
+
+        Set<String> expected = Collections.singleton("persist.estate.json");
+        assertEquals(batches.poll(5, TimeUnit.SECONDS), expected);
+        assertEquals(batches.poll(5, TimeUnit.SECONDS), expected);
+
+        // And later saves are still batched
+        write(file, "{\"base_root\": {\"gold\": 3}}");
+        listener.fileChanged(file);
+        assertEquals(batches.poll(5, TimeUnit.SECONDS), expected);
+    }
+
+    @Test
+    public void testManyFiles() throws IOException, InterruptedException {
+        // More files than the shared reader queue holds, the rest are read
+        // by the watcher itself
+        Set<String> files = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            for (String f : new String[] { "persist.estate.json", "persist.town.json" }) {
+                Path p = dir.resolve("profile_" + i).resolve(f);
+                Files.createDirectories(p.getParent());
+                write(p, "{\"base_root\": {\"gold\": " + i + "}}");
+                files.add("profile_" + i + "/" + f);
+            }
+        }
+        BlockingQueue<Set<String>> batches = new LinkedBlockingQueue<>();
+        ManualWatchBackend backend = new ManualWatchBackend();
+        watcher = new DarkestSaveFileWatcher(null, dir.toString(), 50, backend);
+        watcher.setBatchListener(f -> batches.add(f.keySet()));
+        watcher.watchSaveFiles();
+        backend.listener();
+
+        assertEquals(batches.poll(30, TimeUnit.SECONDS), files);
+        assertEquals(batches.poll(200, TimeUnit.MILLISECONDS), null);
+    }
+}
@@ -0,0 +1,110 @@
+package de.robojumper.ddsavereader.watcher;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.robojumper.ddsavereader.file.DsonWriter;
+
+/**
+ * Runs a watcher with the polling backend against a temporary directory.
+ */
+public class PollingWatcherTests {
+
+    private Path dir;
+    private DarkestSaveFileWatcher watcher;
+    private PollingWatchBackend backend;
+    private final BlockingQueue<String> reads = new LinkedBlockingQueue<>();
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ddsavewatch");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private void start() throws IOException {
+        backend = new PollingWatchBackend(10, 40, 0.5);
+        watcher = new DarkestSaveFileWatcher((name, result) -> {
+            if (!result.encounteredError) {
+                reads.add(name);
+            }
+        }, dir.toString(), 10, backend);
+        watcher.watchSaveFiles();
+    }
+
+    private static void write(Path file, String json) throws IOException {
+        try {
+            Files.write(file, new DsonWriter(json).bytes());
+        } catch (ParseException | InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Test
+    public void testPollingWatcher() throws IOException, InterruptedException {
+        Files.createDirectories(dir.resolve("profile_0"));
+        write(dir.resolve("profile_0/persist.roster.json"), "{\"base_root\": {\"a\": 1}}");
+        start();
+        assertEquals(reads.poll(5, TimeUnit.SECONDS), "profile_0/persist.roster.json");
+
+        // New file in a new directory
+        Files.createDirectories(dir.resolve("profile_1"));
+        write(dir.resolve("profile_1/persist.town.json"), "{\"base_root\": {\"b\": 2}}");
+        assertEquals(reads.poll(5, TimeUnit.SECONDS), "profile_1/persist.town.json");
+
+        // Changed contents. Set the modification time explicitly, as the file
+        // system may not be able to tell writes within the same second apart.
+        Path roster = dir.resolve("profile_0/persist.roster.json");
+        write(roster, "{\"base_root\": {\"a\": 3}}");
+        Files.setLastModifiedTime(roster, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        assertEquals(reads.poll(5, TimeUnit.SECONDS), "profile_0/persist.roster.json");
+
+        // Touched without changes: read, but neither parsed nor reported
+        long skipped = watcher.getSkippedParses();
+        Files.setLastModifiedTime(roster, FileTime.fromMillis(System.currentTimeMillis() + 20000));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (watcher.getSkippedParses() == skipped && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(watcher.getSkippedParses(), skipped + 1);
+        assertTrue(reads.isEmpty());
+
+        // Backs off while nothing changes
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (backend.getIntervalMillis() != 40 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(backend.getIntervalMillis(), 40);
+
+        watcher.stop();
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (watcher.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(watcher.isRunning());
+    }
+}